@@ -12,7 +12,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
-import ru.practicum.client.StatClient;
+import ru.practicum.client.HitEmitter;
 import ru.practicum.dto.EndpointHitDto;
 import ru.practicum.dto.event.EntityParam;
 import ru.practicum.dto.event.EventDto;
@@ -32,7 +32,7 @@ public class PublicEventController {
     private static final String MAIN_SERVICE = "ewm-main-service";
 
     private final EventService eventService;
-    private final StatClient statClient;
+    private final HitEmitter hitEmitter;
 
 
     /**
@@ -106,7 +106,7 @@ public class PublicEventController {
         endpointHitDto.setUri(request.getRequestURI());
         endpointHitDto.setIp(request.getRemoteAddr());
         endpointHitDto.setTimestamp(LocalDateTime.now());
-        statClient.saveHit(endpointHitDto);
+        hitEmitter.emit(endpointHitDto);
     }
 
 }
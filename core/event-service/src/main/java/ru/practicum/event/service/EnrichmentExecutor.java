@@ -0,0 +1,78 @@
+package ru.practicum.event.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Вызов, не получивший места до deadline, не выполняется вовсе, а опоздавший прерывается.
+ */
+@Slf4j
+@Component
+public class EnrichmentExecutor {
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore permits;
+    private final Duration budget;
+
+    public EnrichmentExecutor(@Value("${event.enrichment.max-concurrency:200}") int maxConcurrency,
+                              @Value("${event.enrichment.budget:2s}") Duration budget) {
+        this.permits = new Semaphore(maxConcurrency);
+        this.budget = budget;
+    }
+
+    public <T> Future<T> submit(long deadline, Supplier<T> call) {
+        return executor.submit(() -> {
+            if (!permits.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                throw new TimeoutException("No remote call slot before the deadline");
+            }
+            try {
+                return call.get();
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    public long deadline() {
+        return System.nanoTime() + budget.toNanos();
+    }
+
+    /**
+     * Пустой, если вызов не успел к deadline или завершился ошибкой.
+     */
+    public <T> Optional<T> await(Future<T> future, long deadline, String call) {
+        try {
+            return Optional.ofNullable(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            log.warn("Вызов {} не уложился в {} мс", call, budget.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                log.warn("Вызов {} не получил места за {} мс", call, budget.toMillis());
+            } else {
+                log.warn("Вызов {} завершился ошибкой: {}", call, e.getCause().getMessage());
+            }
+        }
+        return Optional.empty();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
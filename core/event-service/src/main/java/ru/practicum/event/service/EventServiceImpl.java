@@ -10,6 +10,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.category.model.Category;
 import ru.practicum.category.repository.CategoryRepository;
+import ru.practicum.client.CachedStatsClient;
 import ru.practicum.client.CommentClient;
 import ru.practicum.client.RequestClient;
 import ru.practicum.client.StatClient;
@@ -20,7 +21,8 @@ import ru.practicum.dto.request.ParticipationRequestDto;
 import ru.practicum.dto.request.enums.RequestStatus;
 import ru.practicum.exception.NotFoundException;
 import ru.practicum.exception.OperationForbiddenException;
-import ru.practicum.dto.ViewStats;
+import ru.practicum.dto.UriWindow;
+import ru.practicum.dto.UriWindowStats;
 import ru.practicum.dto.event.enums.AdminUpdateStateAction;
 import ru.practicum.dto.event.EntityParam;
 import ru.practicum.dto.event.EventAdminUpdateDto;
@@ -42,16 +44,21 @@ import ru.practicum.event.repository.EventRepository;
 import ru.practicum.event.repository.LocationRepository;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Future;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 @Transactional(readOnly = true)
 public class EventServiceImpl implements EventService {
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern(StatClient.PATTERN);
+
     private final EventRepository eventRepository;
     private final LocationRepository locationRepository;
     private final CategoryRepository categoryRepository;
@@ -60,8 +67,9 @@ public class EventServiceImpl implements EventService {
 
     private final UserClient userClient;
     private final RequestClient requestClient;
-    private final StatClient statClient;
+    private final CachedStatsClient statsClient;
     private final CommentClient commentClient;
+    private final EnrichmentExecutor enrichmentExecutor;
 
     @Override
     public List<EventDto> adminEventsSearch(SearchEventsParam param) {
@@ -131,10 +139,7 @@ public class EventServiceImpl implements EventService {
         if (params.getOnlyAvailable()) {
             filteredEvents = filteredEvents.stream().filter(this::isEventAvailable).toList();
         }
-        List<EventShortDto> eventDtos = addAdvancedDataToShortDtoList(filteredEvents
-                .stream()
-                .map(eventMapper::toEventShortDto)
-                .toList());
+        List<EventShortDto> eventDtos = addAdvancedDataToShortDtoList(filteredEvents);
 
         EventSort sort = params.getSort();
         if (sort != null) {
@@ -275,22 +280,32 @@ public class EventServiceImpl implements EventService {
         }
     }
 
+    /**
+     * Поле, которое сервис не вернул за бюджет времени или из-за ошибки, получает 0 или пустой список.
+     */
     private EventDto addAdvancedData(EventDto eventDto) {
-        List<String> gettingUris = new ArrayList<>();
-        gettingUris.add("/events/" + eventDto.getId());
-        Long views = statClient.getStats(LocalDateTime.now().minusYears(1), LocalDateTime.now(), gettingUris, true)
-                .stream().map(ViewStats::getHits).reduce(0L, Long::sum);
-        eventDto.setViews(views);
-
         Event event = eventRepository.findById(eventDto.getId())
                 .orElseThrow(() -> new NotFoundException(String.format("Event with id %s not found", eventDto.getId())));
 
-        Long confirmedRequests = requestClient.countRequestsByEventAndStatus(event.getId(), RequestStatus.CONFIRMED);
-
-        eventDto.setConfirmedRequests(confirmedRequests);
-
-        List<CommentDto> comments = commentClient.getByEventIdAndStatus(eventDto.getId(), CommentStatus.PUBLISHED);
-        eventDto.setComments(comments);
+        long deadline = enrichmentExecutor.deadline();
+        LocalDateTime now = LocalDateTime.now();
+        UriWindow window = new UriWindow("/events/" + eventDto.getId(),
+                viewsSince(parse(eventDto.getPublishedOn()), parse(eventDto.getCreatedOn()), now), now);
+        Future<List<UriWindowStats>> viewStats = enrichmentExecutor.submit(deadline, () ->
+                statsClient.getWindowStats(List.of(window), true));
+        Future<Long> confirmedRequests = enrichmentExecutor.submit(deadline, () ->
+                requestClient.countRequestsByEventAndStatus(event.getId(), RequestStatus.CONFIRMED));
+        Future<List<CommentDto>> comments = enrichmentExecutor.submit(deadline, () ->
+                commentClient.getByEventIdAndStatus(eventDto.getId(), CommentStatus.PUBLISHED));
+
+        List<String> unavailable = new ArrayList<>();
+        eventDto.setViews(orUnavailable(enrichmentExecutor.await(viewStats, deadline, "stats"), List.of(),
+                "views", unavailable).stream().map(UriWindowStats::getHits).reduce(0L, Long::sum));
+        eventDto.setConfirmedRequests(orUnavailable(enrichmentExecutor.await(confirmedRequests, deadline, "requests"),
+                0L, "confirmedRequests", unavailable));
+        eventDto.setComments(orUnavailable(enrichmentExecutor.await(comments, deadline, "comments"), List.of(),
+                "comments", unavailable));
+        eventDto.setUnavailable(unavailable);
 
         return eventDto;
     }
@@ -304,12 +319,28 @@ public class EventServiceImpl implements EventService {
 
         List<Long> idsList = eventDtoList.stream().map(EventDto::getId).toList();
         log.info("Список ID: " + idsList);
-        List<ParticipationRequestDto> requests = requestClient.getListByEventIds(idsList);
+        long deadline = enrichmentExecutor.deadline();
+        Future<List<ParticipationRequestDto>> requestsFuture = enrichmentExecutor.submit(deadline, () ->
+                requestClient.getListByEventIds(idsList));
 
-        List<CommentDto> comments = commentClient.getAllByEventIdInAndStatus(idsList, CommentStatus.PUBLISHED);
+        Future<List<CommentDto>> commentsFuture = enrichmentExecutor.submit(deadline, () ->
+                commentClient.getAllByEventIdInAndStatus(idsList, CommentStatus.PUBLISHED));
 
-        List<String> uris = eventDtoList.stream().map(dto -> "/events/" + dto.getId()).toList();
-        List<ViewStats> viewStats = statClient.getStats(LocalDateTime.now().minusYears(1), LocalDateTime.now(), uris, false);
+        LocalDateTime now = LocalDateTime.now();
+        List<UriWindow> windows = eventDtoList.stream()
+                .map(dto -> new UriWindow("/events/" + dto.getId(),
+                        viewsSince(parse(dto.getPublishedOn()), parse(dto.getCreatedOn()), now), now))
+                .toList();
+        Future<List<UriWindowStats>> viewStatsFuture = enrichmentExecutor.submit(deadline, () ->
+                statsClient.getWindowStats(windows, false));
+
+        List<String> unavailable = new ArrayList<>();
+        List<ParticipationRequestDto> requests = orUnavailable(enrichmentExecutor.await(requestsFuture, deadline,
+                "requests"), List.of(), "confirmedRequests", unavailable);
+        List<CommentDto> comments = orUnavailable(enrichmentExecutor.await(commentsFuture, deadline, "comments"),
+                List.of(), "comments", unavailable);
+        List<UriWindowStats> viewStats = orUnavailable(enrichmentExecutor.await(viewStatsFuture, deadline, "stats"),
+                List.of(), "views", unavailable);
 
         List<EventDto> changedList = eventDtoList.stream()
                 .peek(dto -> dto.setConfirmedRequests(requests.stream()
@@ -320,22 +351,35 @@ public class EventServiceImpl implements EventService {
                         .toList()))
                 .peek(dto -> dto.setViews(viewStats.stream()
                         .filter(v -> v.getUri().equals("/events/" + dto.getId()))
-                        .map(ViewStats::getHits)
+                        .map(UriWindowStats::getHits)
                         .reduce(0L, Long::sum)))
+                .peek(dto -> dto.setUnavailable(unavailable))
                 .toList();
 
         return changedList;
     }
 
-    private List<EventShortDto> addAdvancedDataToShortDtoList(List<EventShortDto> eventShortDtoList) {
+    private List<EventShortDto> addAdvancedDataToShortDtoList(List<Event> events) {
+        List<EventShortDto> eventShortDtoList = events.stream().map(eventMapper::toEventShortDto).toList();
 
         List<Long> idsList = eventShortDtoList.stream().map(EventShortDto::getId).toList();
-        List<ParticipationRequestDto> requests = requestClient.getListByEventIds(idsList);
-
-        List<CommentDto> comments = commentClient.getAllByEventIdInAndStatus(idsList, CommentStatus.PUBLISHED);
+        long deadline = enrichmentExecutor.deadline();
+        Future<List<ParticipationRequestDto>> requestsFuture = enrichmentExecutor.submit(deadline, () ->
+                requestClient.getListByEventIds(idsList));
+
+        LocalDateTime now = LocalDateTime.now();
+        List<UriWindow> windows = events.stream()
+                .map(event -> new UriWindow("/events/" + event.getId(),
+                        viewsSince(event.getPublishedOn(), event.getCreatedOn(), now), now))
+                .toList();
+        Future<List<UriWindowStats>> viewStatsFuture = enrichmentExecutor.submit(deadline, () ->
+                statsClient.getWindowStats(windows, false));
 
-        List<String> uris = eventShortDtoList.stream().map(dto -> "/events/" + dto.getId()).toList();
-        List<ViewStats> viewStats = statClient.getStats(LocalDateTime.now().minusYears(1), LocalDateTime.now(), uris, false);
+        List<String> unavailable = new ArrayList<>();
+        List<ParticipationRequestDto> requests = orUnavailable(enrichmentExecutor.await(requestsFuture, deadline,
+                "requests"), List.of(), "confirmedRequests", unavailable);
+        List<UriWindowStats> viewStats = orUnavailable(enrichmentExecutor.await(viewStatsFuture, deadline, "stats"),
+                List.of(), "views", unavailable);
 
         List<EventShortDto> changedList = eventShortDtoList.stream()
                 .peek(dto -> dto.setConfirmedRequests(requests.stream()
@@ -343,10 +387,33 @@ public class EventServiceImpl implements EventService {
                         .count()))
                 .peek(dto -> dto.setViews(viewStats.stream()
                         .filter(v -> v.getUri().equals("/events/" + dto.getId()))
-                        .map(ViewStats::getHits)
+                        .map(UriWindowStats::getHits)
                         .reduce(0L, Long::sum)))
+                .peek(dto -> dto.setUnavailable(unavailable))
                 .toList();
 
         return changedList;
     }
+
+    private static <T> T orUnavailable(Optional<T> result, T fallback, String field, List<String> unavailable) {
+        if (result.isEmpty()) {
+            unavailable.add(field);
+        }
+        return result.orElse(fallback);
+    }
+
+    /**
+     * Для неопубликованного события просмотры считаются с создания.
+     */
+    private static LocalDateTime viewsSince(LocalDateTime publishedOn, LocalDateTime createdOn, LocalDateTime now) {
+        LocalDateTime since = publishedOn != null ? publishedOn : createdOn;
+        if (since == null || since.isAfter(now)) {
+            return now.minusYears(1);
+        }
+        return since;
+    }
+
+    private static LocalDateTime parse(String dateTime) {
+        return dateTime == null ? null : LocalDateTime.parse(dateTime, DATE_TIME_FORMATTER);
+    }
 }
@@ -1,5 +1,6 @@
 package ru.practicum.dto.event;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import ru.practicum.dto.category.CategoryDto;
 import ru.practicum.dto.comment.CommentDto;
@@ -33,4 +34,10 @@ public class EventDto {
     private String publishedOn;
 
     private List<CommentDto> comments;
+
+    /**
+     * Поля, вместо которых из-за таймаута или ошибки другого сервиса отданы 0 или пустой список.
+     */
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private List<String> unavailable;
 }
@@ -1,8 +1,11 @@
 package ru.practicum.dto.event;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import ru.practicum.dto.category.CategoryDto;
 
+import java.util.List;
+
 
 @Data
 public class EventShortDto {
@@ -20,4 +23,7 @@ public class EventShortDto {
     private Long initiator;
 
     private String eventDate;
-}
\ No newline at end of file
+
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private List<String> unavailable;
+}
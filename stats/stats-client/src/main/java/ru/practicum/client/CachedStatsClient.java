@@ -0,0 +1,166 @@
+package ru.practicum.client;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import ru.practicum.dto.UriWindow;
+import ru.practicum.dto.UriWindowStats;
+import ru.practicum.dto.ViewStats;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Интервалы "до сейчас" хранятся в кеше без конца, а в сервис уходит текущий момент, поэтому такие запросы
+ * совпадают, а фоновое обновление не застревает на времени первого запроса.
+ */
+public class CachedStatsClient {
+    private final StatClient statClient;
+    private final boolean enabled;
+    private final Duration keyBucket;
+    private final AsyncLoadingCache<WindowKey, WindowHits> windows;
+    private final AsyncLoadingCache<StatsKey, List<ViewStats>> stats;
+
+    public CachedStatsClient(StatClient statClient, CachedStatsClientProperties properties, MeterRegistry meterRegistry) {
+        this.statClient = statClient;
+        this.enabled = properties.isEnabled();
+        this.keyBucket = properties.getKeyBucket();
+        if (!enabled) {
+            this.windows = null;
+            this.stats = null;
+            return;
+        }
+        Executor executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.windows = Caffeine.newBuilder()
+                .executor(executor)
+                .maximumSize(properties.getMaxSize())
+                .refreshAfterWrite(properties.getTtl())
+                .expireAfterWrite(properties.getMaxStale())
+                .recordStats()
+                .buildAsync(new WindowLoader());
+        this.stats = Caffeine.newBuilder()
+                .executor(executor)
+                .maximumSize(properties.getMaxSize())
+                .refreshAfterWrite(properties.getTtl())
+                .expireAfterWrite(properties.getMaxStale())
+                .recordStats()
+                .buildAsync(key -> statClient.getStats(key.start(), endOrNow(key.end()), key.uris(), key.unique()));
+        CaffeineCacheMetrics.monitor(meterRegistry, windows, "stats.client.windows");
+        CaffeineCacheMetrics.monitor(meterRegistry, stats, "stats.client.stats");
+        meterRegistry.gauge("stats.client.cache.hit.ratio", Tags.of("cache", "stats.client.windows"), windows,
+                cache -> cache.synchronous().stats().hitRate());
+        meterRegistry.gauge("stats.client.cache.hit.ratio", Tags.of("cache", "stats.client.stats"), stats,
+                cache -> cache.synchronous().stats().hitRate());
+    }
+
+    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) {
+        if (!enabled) {
+            return statClient.getStats(start, end, uris, unique);
+        }
+        List<String> keyUris = uris == null ? List.of() : uris.stream().sorted().distinct().toList();
+        LocalDateTime keyEnd = keyEnd(start, end, LocalDateTime.now());
+        return join(() -> stats.get(new StatsKey(start, keyEnd, keyUris, Boolean.TRUE.equals(unique))).join());
+    }
+
+    public List<UriWindowStats> getWindowStats(List<UriWindow> uriWindows, Boolean unique) {
+        if (!enabled) {
+            return statClient.getWindowStats(uriWindows, unique);
+        }
+        boolean uniqueHits = Boolean.TRUE.equals(unique);
+        LocalDateTime now = LocalDateTime.now();
+        List<WindowKey> keys = uriWindows.stream()
+                .map(window -> new WindowKey(window.getUri(), window.getStart(),
+                        keyEnd(window.getStart(), window.getEnd(), now), uniqueHits))
+                .toList();
+        Map<WindowKey, WindowHits> hits = join(() -> windows.getAll(keys).join());
+
+        List<UriWindowStats> result = new ArrayList<>(uriWindows.size());
+        for (int i = 0; i < uriWindows.size(); i++) {
+            UriWindow window = uriWindows.get(i);
+            WindowHits windowHits = hits.get(keys.get(i));
+            result.add(new UriWindowStats(window.getUri(), window.getStart(), window.getEnd(), windowHits.hits(),
+                    windowHits.estimated()));
+        }
+        return result;
+    }
+
+    /**
+     * Интервал, начавшийся в будущем, остается точным, чтобы при загрузке конец не оказался раньше начала.
+     */
+    private LocalDateTime keyEnd(LocalDateTime start, LocalDateTime end, LocalDateTime now) {
+        return end.isBefore(now.minus(keyBucket)) || start.isAfter(now) ? end : null;
+    }
+
+    private static LocalDateTime endOrNow(LocalDateTime end) {
+        return end == null ? LocalDateTime.now() : end;
+    }
+
+    private static <T> T join(Supplier<T> call) {
+        try {
+            return call.get();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private class WindowLoader implements CacheLoader<WindowKey, WindowHits> {
+        @Override
+        public WindowHits load(WindowKey key) {
+            return WindowHits.of(statClient.getWindowStats(List.of(key.toWindow(LocalDateTime.now())), key.unique())
+                    .get(0));
+        }
+
+        @Override
+        public Map<WindowKey, WindowHits> loadAll(Set<? extends WindowKey> keys) {
+            Map<WindowKey, WindowHits> loaded = new HashMap<>();
+            Map<Boolean, List<WindowKey>> byUnique = keys.stream()
+                    .collect(Collectors.partitioningBy(WindowKey::unique));
+            byUnique.forEach((unique, group) -> {
+                if (group.isEmpty()) {
+                    return;
+                }
+                LocalDateTime now = LocalDateTime.now();
+                List<UriWindowStats> result = statClient.getWindowStats(
+                        group.stream().map(key -> key.toWindow(now)).toList(), unique);
+                for (int i = 0; i < group.size(); i++) {
+                    loaded.put(group.get(i), WindowHits.of(result.get(i)));
+                }
+            });
+            return loaded;
+        }
+    }
+
+    /**
+     * end == null - интервал "до сейчас".
+     */
+    private record WindowKey(String uri, LocalDateTime start, LocalDateTime end, boolean unique) {
+        UriWindow toWindow(LocalDateTime now) {
+            return new UriWindow(uri, start, end == null ? now : end);
+        }
+    }
+
+    private record WindowHits(Long hits, Boolean estimated) {
+        static WindowHits of(UriWindowStats stats) {
+            return new WindowHits(stats.getHits(), stats.getEstimated());
+        }
+    }
+
+    private record StatsKey(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+    }
+}
@@ -0,0 +1,18 @@
+package ru.practicum.client;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(CachedStatsClientProperties.class)
+public class CachedStatsClientConfig {
+
+    @Bean
+    public CachedStatsClient cachedStatsClient(StatClient statClient,
+                                               CachedStatsClientProperties properties,
+                                               MeterRegistry meterRegistry) {
+        return new CachedStatsClient(statClient, properties, meterRegistry);
+    }
+}
@@ -0,0 +1,24 @@
+package ru.practicum.client;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.client.cache")
+public class CachedStatsClientProperties {
+    private boolean enabled = false;
+    private long maxSize = 10_000;
+    /**
+     * Более старый результат еще отдается, но в фоне запрашивается новый.
+     */
+    private Duration ttl = Duration.ofSeconds(5);
+    private Duration maxStale = Duration.ofMinutes(1);
+    /**
+     * Интервал, конец которого ближе keyBucket к текущему моменту, считается интервалом "до сейчас".
+     */
+    private Duration keyBucket = Duration.ofSeconds(5);
+}
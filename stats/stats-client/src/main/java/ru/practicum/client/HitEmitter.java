@@ -0,0 +1,262 @@
+package ru.practicum.client;
+
+import feign.FeignException;
+import feign.RetryableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.exception.ClientException;
+import ru.practicum.exception.StatsServerUnavailable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Пачка, отклоненная сервисом (4xx кроме 429), не пишется в {@link HitSpool}: повтор ее не исправит.
+ * При выключенной асинхронной отправке ошибка сервиса пробрасывается вызывающему.
+ */
+@Slf4j
+public class HitEmitter {
+    private static final long BLOCK_PARK_NANOS = 100_000;
+    private static final int REPLAY_BATCHES_PER_ROUND = 10;
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final StatClient statClient;
+    private final HitEmitterProperties properties;
+    private final HitSpool spool;
+    private final Queue<EndpointHitDto> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter emittedCounter;
+    private final Counter droppedCounter;
+    private final Counter failedCounter;
+    private final Counter spooledCounter;
+    private final Counter replayedCounter;
+    private volatile boolean running;
+    private boolean serverDown;
+    private long retryAt;
+    private volatile Thread sender;
+
+    public HitEmitter(StatClient statClient,
+                      HitEmitterProperties properties,
+                      HitSpool spool,
+                      MeterRegistry meterRegistry) {
+        this.statClient = statClient;
+        this.properties = properties;
+        this.spool = spool;
+        this.emittedCounter = meterRegistry.counter("stats.client.hits.emitted");
+        this.droppedCounter = meterRegistry.counter("stats.client.hits.dropped");
+        this.failedCounter = meterRegistry.counter("stats.client.hits.failed");
+        meterRegistry.gauge("stats.client.hits.queued", size);
+        meterRegistry.gauge("stats.client.hits.in.flight", inFlight);
+        this.spooledCounter = meterRegistry.counter("stats.client.spool.written");
+        this.replayedCounter = meterRegistry.counter("stats.client.spool.replayed");
+        if (spool != null) {
+            meterRegistry.gauge("stats.client.spool.bytes", spool, HitSpool::size);
+        }
+    }
+
+    public void emit(EndpointHitDto hit) {
+        if (!properties.isEnabled()) {
+            statClient.saveHit(hit);
+            emittedCounter.increment();
+            return;
+        }
+        if (!reserve()) {
+            droppedCounter.increment();
+            return;
+        }
+        queue.offer(hit);
+        if (size.get() >= properties.getBatchSize()) {
+            Thread thread = sender;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(this::sendLoop, "stats-hit-emitter");
+        thread.setDaemon(true);
+        sender = thread;
+        thread.start();
+    }
+
+    public void stop() throws InterruptedException {
+        running = false;
+        Thread thread = sender;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            thread.join(properties.getFlushInterval().toMillis() * 5);
+        }
+        if (spool != null) {
+            try {
+                spool.close();
+            } catch (IOException e) {
+                log.warn("Не удалось закрыть файл неотправленных хитов: {}", e.getMessage());
+            }
+        }
+    }
+
+    private boolean reserve() {
+        long deadline = System.nanoTime() + properties.getBlockTimeout().toNanos();
+        while (true) {
+            int current = size.get();
+            if (current < properties.getCapacity()) {
+                if (size.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+                continue;
+            }
+            switch (properties.getOverflow()) {
+                case DROP_OLDEST -> {
+                    if (queue.poll() != null) {
+                        droppedCounter.increment();
+                        // место освободившегося хита сразу переходит новому, счетчик размера не меняется
+                        return true;
+                    }
+                }
+                case DROP_NEWEST -> {
+                    return false;
+                }
+                case BLOCK -> {
+                    if (System.nanoTime() >= deadline) {
+                        return false;
+                    }
+                    LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                }
+            }
+        }
+    }
+
+    private void sendLoop() {
+        int batchSize = properties.getBatchSize();
+        long intervalNanos = properties.getFlushInterval().toNanos();
+        List<EndpointHitDto> batch = new ArrayList<>(batchSize);
+        while (running || size.get() > 0) {
+            try {
+                if (running && size.get() < batchSize && !replayPending()) {
+                    LockSupport.parkNanos(intervalNanos);
+                }
+                EndpointHitDto hit;
+                while (batch.size() < batchSize && (hit = queue.poll()) != null) {
+                    size.decrementAndGet();
+                    batch.add(hit);
+                }
+                if (!batch.isEmpty()) {
+                    send(batch);
+                    batch.clear();
+                }
+                replay();
+            } catch (RuntimeException e) {
+                // поток отправки единственный: ошибка пачки или файла не должна его останавливать
+                log.error("Ошибка отправки хитов, отброшено {} хитов", batch.size(), e);
+                failedCounter.increment(batch.size());
+                batch.clear();
+                LockSupport.parkNanos(intervalNanos);
+            }
+        }
+    }
+
+    private void send(List<EndpointHitDto> batch) {
+        if (spool != null && !isServerAvailable()) {
+            toSpool(batch);
+            return;
+        }
+        inFlight.set(batch.size());
+        try {
+            statClient.saveHits(List.copyOf(batch));
+            emittedCounter.increment(batch.size());
+            serverDown = false;
+        } catch (RuntimeException e) {
+            log.warn("Не удалось отправить в сервис статистики пачку из {} хитов: {}", batch.size(), e.getMessage());
+            if (spool != null && isServerUnavailable(e)) {
+                markServerDown();
+                toSpool(batch);
+            } else {
+                failedCounter.increment(batch.size());
+            }
+        } finally {
+            inFlight.set(0);
+        }
+    }
+
+    /**
+     * За один проход - не больше нескольких пачек, чтобы новые хиты не ждали разбора всего файла.
+     */
+    private void replay() {
+        for (int i = 0; i < REPLAY_BATCHES_PER_ROUND && replayPending(); i++) {
+            HitSpool.Batch batch = spool.peek(properties.getBatchSize());
+            inFlight.set(batch.hits().size());
+            try {
+                statClient.saveHits(batch.hits());
+                spool.commit(batch);
+                replayedCounter.increment(batch.hits().size());
+                emittedCounter.increment(batch.hits().size());
+                serverDown = false;
+            } catch (RuntimeException e) {
+                if (!isServerUnavailable(e)) {
+                    log.warn("Сервис статистики отклонил пачку из {} хитов из файла, пачка пропущена: {}",
+                            batch.hits().size(), e.getMessage());
+                    spool.commit(batch);
+                    failedCounter.increment(batch.hits().size());
+                    continue;
+                }
+                log.warn("Не удалось дослать хиты из файла: {}", e.getMessage());
+                markServerDown();
+                return;
+            } finally {
+                inFlight.set(0);
+            }
+        }
+    }
+
+    private boolean replayPending() {
+        return spool != null && !spool.isEmpty() && isServerAvailable();
+    }
+
+    static boolean isServerUnavailable(RuntimeException e) {
+        if (e instanceof StatsServerUnavailable || e instanceof RetryableException) {
+            return true;
+        }
+        if (e instanceof FeignException feignException) {
+            return isTransientStatus(feignException.status());
+        }
+        if (e instanceof ClientException clientException) {
+            return clientException.getStatus() == null || isTransientStatus(clientException.getStatus());
+        }
+        return false;
+    }
+
+    private static boolean isTransientStatus(int status) {
+        return status < 0 || status >= 500 || status == TOO_MANY_REQUESTS;
+    }
+
+    private boolean isServerAvailable() {
+        return !serverDown || System.nanoTime() - retryAt >= 0;
+    }
+
+    private void markServerDown() {
+        serverDown = true;
+        retryAt = System.nanoTime() + properties.getSpool().getRetryInterval().toNanos();
+    }
+
+    private void toSpool(List<EndpointHitDto> batch) {
+        int dropped = spool.append(batch);
+        spooledCounter.increment(batch.size() - dropped);
+        if (dropped > 0) {
+            droppedCounter.increment(dropped);
+            log.warn("Файл неотправленных хитов заполнен, отброшено {} хитов", dropped);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package ru.practicum.client;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+
+@Configuration
+@EnableConfigurationProperties(HitEmitterProperties.class)
+public class HitEmitterConfig {
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public HitEmitter hitEmitter(StatClient statClient,
+                                 HitEmitterProperties properties,
+                                 MeterRegistry meterRegistry) throws IOException {
+        HitEmitterProperties.Spool spool = properties.getSpool();
+        HitSpool hitSpool = properties.isEnabled() && spool.isEnabled() ? HitSpool.open(spool.getPath(), spool.getMaxSize().toBytes()) : null;
+        return new HitEmitter(statClient, properties, hitSpool, meterRegistry);
+    }
+}
@@ -0,0 +1,38 @@
+package ru.practicum.client;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats.client.emitter")
+public class HitEmitterProperties {
+    private boolean enabled = false;
+    private int capacity = 10_000;
+    private int batchSize = 500;
+    private Duration flushInterval = Duration.ofSeconds(1);
+    private OverflowPolicy overflow = OverflowPolicy.DROP_OLDEST;
+    private Duration blockTimeout = Duration.ofMillis(20);
+    private Spool spool = new Spool();
+
+    @Getter
+    @Setter
+    public static class Spool {
+        private boolean enabled = false;
+        private Path path = Path.of("stats-spool", "hits.spool");
+        private DataSize maxSize = DataSize.ofMegabytes(64);
+        private Duration retryInterval = Duration.ofSeconds(5);
+    }
+
+    public enum OverflowPolicy {
+        DROP_OLDEST,
+        DROP_NEWEST,
+        BLOCK
+    }
+}
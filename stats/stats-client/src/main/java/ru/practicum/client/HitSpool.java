@@ -0,0 +1,222 @@
+package ru.practicum.client;
+
+import ru.practicum.dto.EndpointHitDto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Отображенный в память файл неотправленных хитов. Смещения чтения и записи хранятся одним 8-байтным словом
+ * и обновляются атомарно; недописанный при сбое хвост отбрасывается по CRC. Доставка "хотя бы один раз".
+ */
+public class HitSpool implements Closeable {
+    private static final int MAGIC = 0x53504F4C;
+    private static final int HEADER_SIZE = 64;
+    private static final int OFFSETS_POSITION = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int COPY_CHUNK_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private int readOffset;
+    private int writeOffset;
+
+    private HitSpool(FileChannel channel, MappedByteBuffer buffer, int capacity) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Файл, созданный с большим размером, не усекается.
+     */
+    public static HitSpool open(Path path, long maxSize) throws IOException {
+        if (maxSize <= HEADER_SIZE || maxSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Spool size must be between %s and %s bytes, got %s",
+                    HEADER_SIZE + 1, Integer.MAX_VALUE, maxSize));
+        }
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        int capacity = (int) Math.min(Integer.MAX_VALUE, Math.max(maxSize, channel.size()));
+        HitSpool spool = new HitSpool(channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity), capacity);
+        spool.recover();
+        return spool;
+    }
+
+    public synchronized boolean isEmpty() {
+        return readOffset == writeOffset;
+    }
+
+    public synchronized int size() {
+        return writeOffset - readOffset;
+    }
+
+    /**
+     * Возвращает число хитов, которые не поместились и были отброшены.
+     */
+    public synchronized int append(List<EndpointHitDto> hits) {
+        // сначала кодируется вся пачка: ошибка кодирования не оставляет в файле часть пачки
+        List<byte[]> records = hits.stream().map(HitSpool::encode).toList();
+        int dropped = 0;
+        for (byte[] record : records) {
+            int length = RECORD_HEADER_SIZE + record.length;
+            if (writeOffset + length > capacity && !compact(length)) {
+                dropped++;
+                continue;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(record);
+            buffer.putInt(writeOffset, record.length);
+            buffer.putInt(writeOffset + 4, (int) crc.getValue());
+            buffer.put(writeOffset + RECORD_HEADER_SIZE, record);
+            writeOffset += length;
+        }
+        storeOffsets();
+        buffer.force();
+        return dropped;
+    }
+
+    public synchronized Batch peek(int max) {
+        List<EndpointHitDto> hits = new ArrayList<>(Math.min(max, 1024));
+        int offset = readOffset;
+        while (hits.size() < max && offset < writeOffset) {
+            int length = buffer.getInt(offset);
+            byte[] record = new byte[length];
+            buffer.get(offset + RECORD_HEADER_SIZE, record);
+            hits.add(decode(record));
+            offset += RECORD_HEADER_SIZE + length;
+        }
+        return new Batch(hits, readOffset, offset);
+    }
+
+    public synchronized void commit(Batch batch) {
+        if (batch.from() != readOffset) {
+            return;
+        }
+        readOffset = batch.to();
+        if (readOffset == writeOffset) {
+            readOffset = HEADER_SIZE;
+            writeOffset = HEADER_SIZE;
+        }
+        storeOffsets();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    private void recover() {
+        if (buffer.getInt(0) != MAGIC) {
+            buffer.putInt(0, MAGIC);
+            readOffset = HEADER_SIZE;
+            writeOffset = HEADER_SIZE;
+            storeOffsets();
+            buffer.force();
+            return;
+        }
+        long offsets = buffer.getLong(OFFSETS_POSITION);
+        int read = (int) (offsets >>> 32);
+        int write = (int) offsets;
+        if (read < HEADER_SIZE || write < read || write > capacity) {
+            read = HEADER_SIZE;
+            write = HEADER_SIZE;
+        }
+        int offset = read;
+        while (offset < write) {
+            int length = offset + RECORD_HEADER_SIZE <= write ? buffer.getInt(offset) : -1;
+            if (length < 0 || offset + RECORD_HEADER_SIZE + length > write || !checksumMatches(offset, length)) {
+                break;
+            }
+            offset += RECORD_HEADER_SIZE + length;
+        }
+        readOffset = read;
+        writeOffset = offset;
+        storeOffsets();
+    }
+
+    private boolean checksumMatches(int offset, int length) {
+        byte[] record = new byte[length];
+        buffer.get(offset + RECORD_HEADER_SIZE, record);
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        return buffer.getInt(offset + 4) == (int) crc.getValue();
+    }
+
+    /**
+     * Переносятся только записи, не перекрывающиеся со своим новым местом: до записи заголовка действуют старые смещения.
+     */
+    private boolean compact(int needed) {
+        int unread = writeOffset - readOffset;
+        if (unread > readOffset - HEADER_SIZE || HEADER_SIZE + unread + needed > capacity) {
+            return false;
+        }
+        byte[] chunk = new byte[Math.min(COPY_CHUNK_SIZE, Math.max(1, unread))];
+        for (int copied = 0; copied < unread; copied += chunk.length) {
+            int length = Math.min(chunk.length, unread - copied);
+            buffer.get(readOffset + copied, chunk, 0, length);
+            buffer.put(HEADER_SIZE + copied, chunk, 0, length);
+        }
+        buffer.force();
+        readOffset = HEADER_SIZE;
+        writeOffset = HEADER_SIZE + unread;
+        storeOffsets();
+        return true;
+    }
+
+    private void storeOffsets() {
+        buffer.putLong(OFFSETS_POSITION, (long) readOffset << 32 | (writeOffset & 0xFFFFFFFFL));
+    }
+
+    private static byte[] encode(EndpointHitDto hit) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeUTF(hit.getApp());
+            output.writeUTF(hit.getUri());
+            output.writeUTF(hit.getIp());
+            // хит без времени получил бы время повторной отправки, поэтому время фиксируется при записи в файл
+            LocalDateTime timestamp = hit.getTimestamp() == null ? LocalDateTime.now() : hit.getTimestamp();
+            output.writeLong(timestamp.toEpochSecond(ZoneOffset.UTC));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static EndpointHitDto decode(byte[] record) {
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(record))) {
+            EndpointHitDto hit = new EndpointHitDto();
+            hit.setApp(input.readUTF());
+            hit.setUri(input.readUTF());
+            hit.setIp(input.readUTF());
+            hit.setTimestamp(LocalDateTime.ofEpochSecond(input.readLong(), 0, ZoneOffset.UTC));
+            return hit;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public record Batch(List<EndpointHitDto> hits, int from, int to) {
+    }
+}
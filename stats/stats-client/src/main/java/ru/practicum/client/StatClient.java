@@ -8,12 +8,14 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.UriWindow;
+import ru.practicum.dto.UriWindowStats;
 import ru.practicum.dto.ViewStats;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
-@FeignClient(name = "stats-server")
+@FeignClient(name = "stats-server", configuration = StatClientFeignConfig.class)
 public interface StatClient {
     String PATTERN = "yyyy-MM-dd HH:mm:ss";
 
@@ -21,9 +23,23 @@ public interface StatClient {
 
     void saveHit(@Valid @RequestBody EndpointHitDto hitDto);
 
+    @PostMapping("/hits")
+    void saveHits(@RequestBody List<EndpointHitDto> hitDtos);
+
     @GetMapping("/stats")
     List<ViewStats> getStats(@RequestParam @DateTimeFormat(pattern = PATTERN) LocalDateTime start,
                                     @RequestParam @DateTimeFormat(pattern = PATTERN) LocalDateTime end,
                                     @RequestParam(required = false) List<String> uris,
                                     @RequestParam(defaultValue = "false") Boolean unique);
+
+    @GetMapping("/stats")
+    List<ViewStats> getStats(@RequestParam @DateTimeFormat(pattern = PATTERN) LocalDateTime start,
+                             @RequestParam @DateTimeFormat(pattern = PATTERN) LocalDateTime end,
+                             @RequestParam(required = false) List<String> uris,
+                             @RequestParam(defaultValue = "false") Boolean unique,
+                             @RequestParam(defaultValue = "false") Boolean approximate);
+
+    @PostMapping("/stats/windows")
+    List<UriWindowStats> getWindowStats(@RequestBody List<UriWindow> windows,
+                                        @RequestParam(defaultValue = "false") Boolean unique);
 }
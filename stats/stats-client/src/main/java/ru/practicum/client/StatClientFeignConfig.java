@@ -0,0 +1,70 @@
+package ru.practicum.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.RequestInterceptor;
+import feign.codec.Decoder;
+import feign.codec.Encoder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.practicum.dto.EpochMillisTimeModule;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+
+/**
+ * Класс намеренно без {@code @Configuration}: иначе он применился бы ко всем Feign-клиентам сервиса.
+ */
+public class StatClientFeignConfig {
+    private static final String FORMAT_PROPERTY = "stats.client.format";
+    private static final String CBOR = "cbor";
+
+    @Bean
+    @ConditionalOnProperty(name = FORMAT_PROPERTY, havingValue = CBOR)
+    public Encoder statClientCborEncoder() {
+        ObjectMapper cborMapper = cborObjectMapper();
+        return (object, bodyType, template) -> {
+            try {
+                template.removeHeader(HttpHeaders.CONTENT_TYPE);
+                template.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_CBOR_VALUE);
+                template.body(cborMapper.writerFor(cborMapper.constructType(bodyType)).writeValueAsBytes(object), null);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = FORMAT_PROPERTY, havingValue = CBOR)
+    public Decoder statClientCborDecoder() {
+        ObjectMapper cborMapper = cborObjectMapper();
+        ObjectMapper jsonMapper = Jackson2ObjectMapperBuilder.json().build();
+        return (response, type) -> {
+            if (response.body() == null) {
+                return null;
+            }
+            Collection<String> contentType = response.headers().get(HttpHeaders.CONTENT_TYPE);
+            boolean cbor = contentType != null && contentType.stream()
+                    .anyMatch(value -> value.startsWith(MediaType.APPLICATION_CBOR_VALUE));
+            ObjectMapper mapper = cbor ? cborMapper : jsonMapper;
+            try (InputStream body = response.body().asInputStream()) {
+                return mapper.readValue(body, mapper.constructType(type));
+            }
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = FORMAT_PROPERTY, havingValue = CBOR)
+    public RequestInterceptor statClientCborAccept() {
+        return template -> template.header(HttpHeaders.ACCEPT,
+                MediaType.APPLICATION_CBOR_VALUE + ", " + MediaType.APPLICATION_JSON_VALUE + ";q=0.9");
+    }
+
+    private static ObjectMapper cborObjectMapper() {
+        return Jackson2ObjectMapperBuilder.cbor().modulesToInstall(new EpochMillisTimeModule()).build();
+    }
+}
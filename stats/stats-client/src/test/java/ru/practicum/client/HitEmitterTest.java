@@ -0,0 +1,267 @@
+package ru.practicum.client;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.UriWindow;
+import ru.practicum.dto.UriWindowStats;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.exception.ClientException;
+import ru.practicum.exception.StatsServerUnavailable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HitEmitterTest {
+    private static final LocalDateTime TIMESTAMP = LocalDateTime.of(2024, 1, 1, 12, 0);
+    private static final long WAIT_MILLIS = 5_000;
+
+    private final StubStatClient client = new StubStatClient();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private HitEmitter emitter;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (emitter != null) {
+            emitter.stop();
+        }
+    }
+
+    @Test
+    void sendsQueuedHitsInBatches() throws InterruptedException {
+        HitEmitterProperties properties = properties();
+        properties.setBatchSize(3);
+        emitter = new HitEmitter(client, properties, null, meterRegistry);
+        emitter.start();
+
+        for (int i = 1; i <= 7; i++) {
+            emitter.emit(hit("/" + i));
+        }
+        emitter.stop();
+
+        assertEquals(List.of("/1", "/2", "/3", "/4", "/5", "/6", "/7"), client.sentUris());
+        assertTrue(client.batches.stream().allMatch(batch -> batch.size() <= 3));
+        assertEquals(7, count("stats.client.hits.emitted"));
+    }
+
+    @Test
+    void sendsHitSynchronouslyWhenDisabled() {
+        HitEmitterProperties properties = properties();
+        properties.setEnabled(false);
+        emitter = new HitEmitter(client, properties, null, meterRegistry);
+        emitter.start();
+
+        emitter.emit(hit("/1"));
+
+        assertEquals(List.of("/1"), client.sentUris());
+        client.failure = new StatsServerUnavailable("down", null);
+        assertThrows(StatsServerUnavailable.class, () -> emitter.emit(hit("/2")));
+    }
+
+    @Test
+    void dropOldestKeepsNewestHits() throws InterruptedException {
+        HitEmitterProperties properties = properties();
+        properties.setCapacity(2);
+        properties.setOverflow(HitEmitterProperties.OverflowPolicy.DROP_OLDEST);
+        emitter = new HitEmitter(client, properties, null, meterRegistry);
+
+        emitter.emit(hit("/1"));
+        emitter.emit(hit("/2"));
+        emitter.emit(hit("/3"));
+        emitter.start();
+        emitter.stop();
+
+        assertEquals(List.of("/2", "/3"), client.sentUris());
+        assertEquals(1, count("stats.client.hits.dropped"));
+    }
+
+    @Test
+    void dropNewestKeepsQueuedHits() throws InterruptedException {
+        HitEmitterProperties properties = properties();
+        properties.setCapacity(2);
+        properties.setOverflow(HitEmitterProperties.OverflowPolicy.DROP_NEWEST);
+        emitter = new HitEmitter(client, properties, null, meterRegistry);
+
+        emitter.emit(hit("/1"));
+        emitter.emit(hit("/2"));
+        emitter.emit(hit("/3"));
+        emitter.start();
+        emitter.stop();
+
+        assertEquals(List.of("/1", "/2"), client.sentUris());
+        assertEquals(1, count("stats.client.hits.dropped"));
+    }
+
+    @Test
+    void blockDropsHitAfterTimeout() throws InterruptedException {
+        HitEmitterProperties properties = properties();
+        properties.setCapacity(1);
+        properties.setOverflow(HitEmitterProperties.OverflowPolicy.BLOCK);
+        properties.setBlockTimeout(Duration.ofMillis(50));
+        emitter = new HitEmitter(client, properties, null, meterRegistry);
+
+        emitter.emit(hit("/1"));
+        long started = System.nanoTime();
+        emitter.emit(hit("/2"));
+        long waited = System.nanoTime() - started;
+        emitter.start();
+        emitter.stop();
+
+        assertTrue(waited >= Duration.ofMillis(50).toNanos());
+        assertEquals(List.of("/1"), client.sentUris());
+        assertEquals(1, count("stats.client.hits.dropped"));
+    }
+
+    @Test
+    void countsFailedBatchWithoutSpool() throws InterruptedException {
+        client.failure = new StatsServerUnavailable("down", null);
+        emitter = new HitEmitter(client, properties(), null, meterRegistry);
+        emitter.start();
+
+        emitter.emit(hit("/1"));
+        emitter.stop();
+
+        assertEquals(List.of(), client.sentUris());
+        assertEquals(1, count("stats.client.hits.failed"));
+    }
+
+    @Test
+    void spoolsWhileServerIsDownAndReplaysAfterRecovery() throws IOException, InterruptedException {
+        HitEmitterProperties properties = properties();
+        HitSpool spool = HitSpool.open(tempFile(), 4096);
+        client.failure = new StatsServerUnavailable("down", null);
+        emitter = new HitEmitter(client, properties, spool, meterRegistry);
+        emitter.start();
+
+        emitter.emit(hit("/1"));
+        await(() -> count("stats.client.spool.written") == 1);
+        emitter.emit(hit("/2"));
+        await(() -> count("stats.client.spool.written") == 2);
+        client.failure = null;
+
+        await(() -> spool.isEmpty() && client.sentUris().size() == 2);
+        assertEquals(List.of("/1", "/2"), client.sentUris());
+        assertEquals(2, count("stats.client.spool.replayed"));
+        assertEquals(0, count("stats.client.hits.failed"));
+    }
+
+    @Test
+    void doesNotSpoolRejectedBatch() throws IOException, InterruptedException {
+        HitSpool spool = HitSpool.open(tempFile(), 4096);
+        client.failure = new ClientException(400, "bad request");
+        emitter = new HitEmitter(client, properties(), spool, meterRegistry);
+        emitter.start();
+
+        emitter.emit(hit("/1"));
+        await(() -> count("stats.client.hits.failed") == 1);
+
+        assertTrue(spool.isEmpty());
+        assertEquals(0, count("stats.client.spool.written"));
+    }
+
+    @Test
+    void keepsSendingAfterSpoolFailure() throws IOException, InterruptedException {
+        HitSpool spool = HitSpool.open(tempFile(), 4096);
+        client.failure = new StatsServerUnavailable("down", null);
+        emitter = new HitEmitter(client, properties(), spool, meterRegistry);
+        emitter.start();
+
+        EndpointHitDto broken = hit("/1");
+        broken.setApp(null);
+        emitter.emit(broken);
+        await(() -> count("stats.client.hits.failed") == 1);
+        client.failure = null;
+        emitter.emit(hit("/2"));
+
+        await(() -> client.sentUris().contains("/2"));
+        assertEquals(List.of("/2"), client.sentUris());
+    }
+
+    private static HitEmitterProperties properties() {
+        HitEmitterProperties properties = new HitEmitterProperties();
+        properties.setEnabled(true);
+        properties.setFlushInterval(Duration.ofMillis(10));
+        properties.getSpool().setRetryInterval(Duration.ofMillis(20));
+        return properties;
+    }
+
+    private double count(String name) {
+        return meterRegistry.counter(name).count();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met in time");
+            Thread.sleep(5);
+        }
+    }
+
+    private static Path tempFile() throws IOException {
+        Path path = Files.createTempFile("hit-emitter", ".spool");
+        Files.delete(path);
+        path.toFile().deleteOnExit();
+        return path;
+    }
+
+    private static EndpointHitDto hit(String uri) {
+        EndpointHitDto hit = new EndpointHitDto();
+        hit.setApp("a");
+        hit.setUri(uri);
+        hit.setIp("1.1.1.1");
+        hit.setTimestamp(TIMESTAMP);
+        return hit;
+    }
+
+    private static class StubStatClient implements StatClient {
+        private final List<List<EndpointHitDto>> batches = new CopyOnWriteArrayList<>();
+        private volatile RuntimeException failure;
+
+        @Override
+        public void saveHit(EndpointHitDto hitDto) {
+            saveHits(List.of(hitDto));
+        }
+
+        @Override
+        public void saveHits(List<EndpointHitDto> hitDtos) {
+            RuntimeException e = failure;
+            if (e != null) {
+                throw e;
+            }
+            batches.add(new ArrayList<>(hitDtos));
+        }
+
+        @Override
+        public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, Boolean unique,
+                                        Boolean approximate) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<UriWindowStats> getWindowStats(List<UriWindow> windows, Boolean unique) {
+            throw new UnsupportedOperationException();
+        }
+
+        private List<String> sentUris() {
+            return batches.stream().flatMap(List::stream).map(EndpointHitDto::getUri).toList();
+        }
+    }
+}
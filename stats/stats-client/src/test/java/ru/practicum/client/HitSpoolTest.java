@@ -0,0 +1,117 @@
+package ru.practicum.client;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.dto.EndpointHitDto;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HitSpoolTest {
+    private static final int HEADER_SIZE = 64;
+    // длина строк + три длины writeUTF + время + заголовок записи
+    private static final int RECORD_SIZE = (1 + 2 + 7) + 3 * 2 + 8 + 8;
+    private static final LocalDateTime TIMESTAMP = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+    @Test
+    void replaysAppendedHitsAfterReopen() throws IOException {
+        Path path = tempFile();
+        try (HitSpool spool = HitSpool.open(path, 4096)) {
+            assertEquals(0, spool.append(List.of(hit("/1"), hit("/2"))));
+        }
+
+        try (HitSpool spool = HitSpool.open(path, 4096)) {
+            HitSpool.Batch batch = spool.peek(10);
+
+            assertEquals(List.of("/1", "/2"), uris(batch));
+            assertEquals(TIMESTAMP, batch.hits().get(0).getTimestamp());
+            spool.commit(batch);
+            assertTrue(spool.isEmpty());
+        }
+    }
+
+    @Test
+    void dropsTornTailOnReopen() throws IOException {
+        Path path = tempFile();
+        try (HitSpool spool = HitSpool.open(path, 4096)) {
+            spool.append(List.of(hit("/1"), hit("/2"), hit("/3")));
+        }
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            long lastRecordPayload = HEADER_SIZE + 2L * RECORD_SIZE + 8;
+            file.seek(lastRecordPayload);
+            int value = file.read();
+            file.seek(lastRecordPayload);
+            file.write(value ^ 0xFF);
+        }
+
+        try (HitSpool spool = HitSpool.open(path, 4096)) {
+            assertEquals(2 * RECORD_SIZE, spool.size());
+            assertEquals(0, spool.append(List.of(hit("/4"))));
+            assertEquals(List.of("/1", "/2", "/4"), uris(spool.peek(10)));
+        }
+    }
+
+    @Test
+    void dropsHitsWhenFullAndNothingWasRead() throws IOException {
+        try (HitSpool spool = HitSpool.open(tempFile(), HEADER_SIZE + 4 * RECORD_SIZE)) {
+            assertEquals(1, spool.append(List.of(hit("/1"), hit("/2"), hit("/3"), hit("/4"), hit("/5"))));
+
+            assertEquals(List.of("/1", "/2", "/3", "/4"), uris(spool.peek(10)));
+        }
+    }
+
+    @Test
+    void reusesReadPrefixWhenFull() throws IOException {
+        Path path = tempFile();
+        try (HitSpool spool = HitSpool.open(path, HEADER_SIZE + 4 * RECORD_SIZE)) {
+            spool.append(List.of(hit("/1"), hit("/2"), hit("/3"), hit("/4")));
+            spool.commit(spool.peek(3));
+
+            assertEquals(0, spool.append(List.of(hit("/5"), hit("/6"))));
+            assertEquals(3 * RECORD_SIZE, spool.size());
+        }
+
+        try (HitSpool spool = HitSpool.open(path, HEADER_SIZE + 4 * RECORD_SIZE)) {
+            assertEquals(List.of("/4", "/5", "/6"), uris(spool.peek(10)));
+        }
+    }
+
+    @Test
+    void ignoresStaleCommit() throws IOException {
+        try (HitSpool spool = HitSpool.open(tempFile(), 4096)) {
+            spool.append(List.of(hit("/1"), hit("/2")));
+            HitSpool.Batch first = spool.peek(1);
+            spool.commit(first);
+
+            spool.commit(first);
+
+            assertEquals(List.of("/2"), uris(spool.peek(10)));
+        }
+    }
+
+    private static Path tempFile() throws IOException {
+        Path path = Files.createTempFile("hit-spool", ".dat");
+        Files.delete(path);
+        path.toFile().deleteOnExit();
+        return path;
+    }
+
+    private static EndpointHitDto hit(String uri) {
+        EndpointHitDto hit = new EndpointHitDto();
+        hit.setApp("a");
+        hit.setUri(uri);
+        hit.setIp("1.1.1.1");
+        hit.setTimestamp(TIMESTAMP);
+        return hit;
+    }
+
+    private static List<String> uris(HitSpool.Batch batch) {
+        return batch.hits().stream().map(EndpointHitDto::getUri).toList();
+    }
+}
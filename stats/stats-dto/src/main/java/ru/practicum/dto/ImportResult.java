@@ -0,0 +1,15 @@
+package ru.practicum.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class ImportResult {
+    private Long imported;
+    private Long rejected;
+    private Long durationMillis;
+    private Long rowsPerSecond;
+}
@@ -1,5 +1,6 @@
 package ru.practicum.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -11,4 +12,13 @@ public class ViewStats {
     private String app;
     private String uri;
     private Long hits;
+    /**
+     * true, если в интервал попали выборочно записанные хиты и hits - оценка.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean estimated;
+
+    public ViewStats(String app, String uri, Long hits) {
+        this(app, uri, hits, null);
+    }
 }
@@ -0,0 +1,27 @@
+package ru.practicum.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.practicum.dto.EpochMillisTimeModule;
+
+import java.util.List;
+
+/**
+ * Конвертер добавляется в конец списка, поэтому без явного Content-Type или Accept остается JSON.
+ */
+@Configuration
+public class CborConfig implements WebMvcConfigurer {
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new MappingJackson2CborHttpMessageConverter(cborObjectMapper()));
+    }
+
+    static ObjectMapper cborObjectMapper() {
+        return Jackson2ObjectMapperBuilder.cbor().modulesToInstall(new EpochMillisTimeModule()).build();
+    }
+}
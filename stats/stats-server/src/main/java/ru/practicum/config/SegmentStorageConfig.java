@@ -0,0 +1,16 @@
+package ru.practicum.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.practicum.segment.SegmentStore;
+
+@Configuration
+@ConditionalOnSegmentStorage
+public class SegmentStorageConfig {
+
+    @Bean(destroyMethod = "close")
+    public SegmentStore segmentStore(StatsProperties properties) {
+        StatsProperties.Segments segments = properties.getStorage().getSegments();
+        return new SegmentStore(segments.getDirectory(), segments.getSpan(), segments.getCapacity());
+    }
+}
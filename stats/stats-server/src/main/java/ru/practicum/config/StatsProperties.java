@@ -0,0 +1,207 @@
+package ru.practicum.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "stats")
+public class StatsProperties {
+    private Storage storage = new Storage();
+    private Ingest ingest = new Ingest();
+    private Partition partition = new Partition();
+    private HotWindow hotWindow = new HotWindow();
+    private Stream stream = new Stream();
+    private Top top = new Top();
+    private Cache cache = new Cache();
+    private Dedup dedup = new Dedup();
+    private Sketch sketch = new Sketch();
+    private Compaction compaction = new Compaction();
+    private RangeIndex rangeIndex = new RangeIndex();
+    private Batch batch = new Batch();
+    private Instance instance = new Instance();
+
+    @Getter
+    @Setter
+    public static class Storage {
+        private Engine engine = Engine.JDBC;
+        private Encoding encoding = Encoding.PLAIN;
+        private Segments segments = new Segments();
+
+        public String rawTable() {
+            return encoding == Encoding.DICTIONARY ? "statistic_encoded" : "statistic";
+        }
+
+        public String rawView() {
+            return encoding == Encoding.DICTIONARY ? "statistic_all" : "statistic";
+        }
+
+        public List<String> rawTables() {
+            return encoding == Encoding.DICTIONARY ? List.of("statistic_encoded", "statistic") : List.of("statistic");
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class Segments {
+        private Path directory = Path.of("stats-segments");
+        private Duration span = Duration.ofDays(1);
+        private int capacity = 1_000_000;
+        private Duration flushInterval = Duration.ofSeconds(1);
+    }
+
+    @Getter
+    @Setter
+    public static class Ingest {
+        private boolean async = false;
+        private int capacity = 100_000;
+        private int batchSize = 1000;
+        private Duration flushInterval = Duration.ofMillis(200);
+        private OverflowPolicy overflow = OverflowPolicy.CALLER_RUNS;
+        private Sampling sampling = new Sampling();
+    }
+
+    @Getter
+    @Setter
+    public static class Sampling {
+        /**
+         * Выше threshold заполнения буфера сохраняется один хит из weight с весом weight,
+         * поэтому суммы остаются несмещенными, а часы с выборочной записью помечаются как оценка.
+         */
+        private boolean enabled = false;
+        private double threshold = 0.5;
+        private int maxWeight = 16;
+        private Duration refreshInterval = Duration.ofMinutes(1);
+    }
+
+    @Getter
+    @Setter
+    public static class Partition {
+        private boolean enabled = true;
+        private ChronoUnit interval = ChronoUnit.MONTHS;
+        private int premake = 2;
+        // null - хранить бессрочно
+        private Duration retention;
+        private RetentionAction retentionAction = RetentionAction.DROP;
+    }
+
+    @Getter
+    @Setter
+    public static class HotWindow {
+        // видит только хиты своего экземпляра
+        private boolean enabled = false;
+        private Duration size = Duration.ofMinutes(60);
+        private Duration nowTolerance = Duration.ofSeconds(5);
+    }
+
+    @Getter
+    @Setter
+    public static class Stream {
+        private int fetchSize = 1000;
+    }
+
+    @Getter
+    @Setter
+    public static class Top {
+        // видит только хиты своего экземпляра
+        private boolean sketchEnabled = false;
+        private int capacity = 1000;
+        private Duration horizon = Duration.ofHours(48);
+        private Duration exactBelow = Duration.ofHours(1);
+    }
+
+    @Getter
+    @Setter
+    public static class Cache {
+        private boolean enabled = false;
+        private long maxSize = 10_000;
+        private Duration ttl = Duration.ofSeconds(30);
+        private Duration keyBucket = Duration.ofMinutes(1);
+    }
+
+    @Getter
+    @Setter
+    public static class Dedup {
+        // повтор, попавший на другой экземпляр, не отсекается
+        private boolean enabled = false;
+        private Duration window = Duration.ofSeconds(10);
+    }
+
+    @Getter
+    @Setter
+    public static class Sketch {
+        private boolean enabled = false;
+        private Duration flushInterval = Duration.ofSeconds(1);
+    }
+
+    @Getter
+    @Setter
+    public static class Compaction {
+        /**
+         * Требует stats.sketch.enabled: уникальные просмотры за сжатые часы считаются только по скетчам.
+         */
+        private boolean enabled = false;
+        private Duration after = Duration.ofDays(30);
+        private int batchSize = 10_000;
+    }
+
+    @Getter
+    @Setter
+    public static class RangeIndex {
+        // при 24ч дерево ключа занимает около 14 КБ; при других живых экземплярах индекс отключается
+        private boolean enabled = false;
+        private Duration horizon = Duration.ofHours(24);
+        // хиты ключей сверх лимита не индексируются, и запросы с ними идут в базу
+        private int maxKeys = 100_000;
+        private Duration nowTolerance = Duration.ofSeconds(5);
+    }
+
+    @Getter
+    @Setter
+    public static class Batch {
+        // пул общий для всех пачек
+        private int parallelism = 4;
+        private int queueCapacity = 64;
+        private int maxQueries = 50;
+    }
+
+    @Getter
+    @Setter
+    public static class Instance {
+        private Duration heartbeatInterval = Duration.ofSeconds(10);
+    }
+
+    public enum Engine {
+        JDBC,
+        /**
+         * Локальные файлы сегментов вместо базы, поэтому только для одного экземпляра; ip хранится 64-битным хешем.
+         */
+        SEGMENT
+    }
+
+    public enum Encoding {
+        PLAIN,
+        /**
+         * Хиты пишутся в statistic_encoded со словарными app и uri; старые хиты из statistic читаются
+         * вместе с ними через statistic_all, пока их не удалит сжатие.
+         */
+        DICTIONARY
+    }
+
+    public enum OverflowPolicy {
+        DROP,
+        CALLER_RUNS
+    }
+
+    public enum RetentionAction {
+        DROP,
+        // секция остается отдельной таблицей для архивации
+        DETACH
+    }
+}
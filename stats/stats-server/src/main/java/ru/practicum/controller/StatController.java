@@ -1,10 +1,17 @@
 package ru.practicum.controller;
 
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -12,17 +19,39 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.ImportResult;
+import ru.practicum.dto.StatsQuery;
+import ru.practicum.dto.UriWindow;
+import ru.practicum.dto.UriWindowStats;
 import ru.practicum.dto.ViewStats;
+import ru.practicum.dto.ViewStatsBucket;
+import ru.practicum.exception.ValidationException;
+import ru.practicum.model.ImportFormat;
+import ru.practicum.service.HitImportParser;
 import ru.practicum.service.StatService;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 
 @RequiredArgsConstructor
 @RestController
 public class StatController {
     private final StatService statService;
+    private final ObjectMapper objectMapper;
+    private final HitImportParser hitImportParser;
     public static final String PATTERN = "yyyy-MM-dd HH:mm:ss";
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+    public static final String TEXT_CSV = "text/csv";
+    private static final int NDJSON_CHUNK_SIZE = 1000;
 
 
     @PostMapping("/hit")
@@ -31,11 +60,137 @@ public class StatController {
         statService.saveHit(hitDto);
     }
 
+    @PostMapping(value = "/hits", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    @ResponseStatus(HttpStatus.CREATED)
+    public void saveHits(@RequestBody List<@Valid EndpointHitDto> hitDtos) {
+        statService.saveHits(hitDtos);
+    }
+
+    /**
+     * Некорректные строки пропускаются и учитываются в ответе; поток без корректных строк отклоняется целиком.
+     */
+    @PostMapping(value = "/hits", consumes = APPLICATION_NDJSON)
+    @ResponseStatus(HttpStatus.CREATED)
+    public ImportResult saveHitsStream(HttpServletRequest request) throws IOException {
+        long started = System.nanoTime();
+        ObjectReader reader = objectMapper.readerFor(EndpointHitDto.class);
+        BufferedReader lines = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8));
+        List<EndpointHitDto> chunk = new ArrayList<>(NDJSON_CHUNK_SIZE);
+        long accepted = 0;
+        long rejected = 0;
+        String firstError = null;
+        String row;
+        long line = 0;
+        while ((row = lines.readLine()) != null) {
+            line++;
+            if (row.isBlank()) {
+                continue;
+            }
+            String error;
+            try {
+                EndpointHitDto hitDto = reader.readValue(row);
+                error = hitImportParser.validate(hitDto);
+                if (error == null) {
+                    chunk.add(hitDto);
+                }
+            } catch (JsonProcessingException e) {
+                error = e.getOriginalMessage();
+            }
+            if (error != null) {
+                rejected++;
+                if (firstError == null) {
+                    firstError = "line " + line + ": " + error;
+                }
+                continue;
+            }
+            if (chunk.size() == NDJSON_CHUNK_SIZE) {
+                statService.saveHits(chunk);
+                accepted += chunk.size();
+                chunk = new ArrayList<>(NDJSON_CHUNK_SIZE);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            statService.saveHits(chunk);
+            accepted += chunk.size();
+        }
+        if (accepted == 0 && rejected > 0) {
+            throw new ValidationException("Все строки потока отклонены, первая ошибка - " + firstError);
+        }
+        long millis = Math.max(1, Duration.ofNanos(System.nanoTime() - started).toMillis());
+        return new ImportResult(accepted, rejected, millis, accepted * 1000 / millis);
+    }
+
+    @PostMapping(value = "/hits/import", consumes = TEXT_CSV)
+    public ImportResult importCsv(HttpServletRequest request) throws IOException {
+        return statService.importHits(request.getInputStream(), ImportFormat.CSV);
+    }
+
+    @PostMapping(value = "/hits/import", consumes = APPLICATION_NDJSON)
+    public ImportResult importNdjson(HttpServletRequest request) throws IOException {
+        return statService.importHits(request.getInputStream(), ImportFormat.NDJSON);
+    }
+
+    /**
+     * В uris можно передавать шаблоны: {@code *} - любые символы внутри сегмента пути,
+     * {@code **} - любое число сегментов, например {@code /events/*}. Звездочка внутри самого uri
+     * экранируется обратной косой чертой.
+     */
     @GetMapping("/stats")
     public List<ViewStats> getStats(@RequestParam @DateTimeFormat(pattern = PATTERN) LocalDateTime start,
                                     @RequestParam @DateTimeFormat(pattern = PATTERN) LocalDateTime end,
                                     @RequestParam(required = false) List<String> uris,
-                                    @RequestParam(defaultValue = "false") Boolean unique) {
-        return statService.getStats(start, end, uris, unique);
+                                    @RequestParam(defaultValue = "false") Boolean unique,
+                                    @RequestParam(defaultValue = "false") Boolean approximate) {
+        return statService.getStats(start, end, uris, unique, approximate);
+    }
+
+    /**
+     * Ответ - по списку на каждый запрос в порядке запросов; одинаковые запросы выполняются один раз.
+     */
+    @PostMapping("/stats/batch")
+    public List<List<ViewStats>> getStatsBatch(@RequestBody List<@Valid StatsQuery> queries) {
+        return statService.getStatsBatch(queries);
+    }
+
+    @GetMapping("/stats/top")
+    public List<ViewStats> getTop(@RequestParam @DateTimeFormat(pattern = PATTERN) LocalDateTime start,
+                                  @RequestParam @DateTimeFormat(pattern = PATTERN) LocalDateTime end,
+                                  @RequestParam(defaultValue = "10") int k) {
+        return statService.getTop(start, end, k);
+    }
+
+    @GetMapping("/stats/series")
+    public List<ViewStatsBucket> getSeries(@RequestParam @DateTimeFormat(pattern = PATTERN) LocalDateTime start,
+                                           @RequestParam @DateTimeFormat(pattern = PATTERN) LocalDateTime end,
+                                           @RequestParam(defaultValue = "HOURS") ChronoUnit interval,
+                                           @RequestParam(required = false) List<String> uris,
+                                           @RequestParam(defaultValue = "false") Boolean unique) {
+        return statService.getSeries(start, end, interval, uris, unique);
+    }
+
+    @PostMapping("/stats/windows")
+    public List<UriWindowStats> getWindowStats(@RequestBody List<@Valid UriWindow> windows,
+                                               @RequestParam(defaultValue = "false") Boolean unique) {
+        return statService.getWindowStats(windows, unique);
+    }
+
+    @GetMapping(value = "/stats/stream", produces = APPLICATION_NDJSON)
+    public void streamStats(@RequestParam @DateTimeFormat(pattern = PATTERN) LocalDateTime start,
+                            @RequestParam @DateTimeFormat(pattern = PATTERN) LocalDateTime end,
+                            @RequestParam(required = false) List<String> uris,
+                            @RequestParam(defaultValue = "false") Boolean unique,
+                            HttpServletResponse response) throws IOException {
+        response.setContentType(APPLICATION_NDJSON);
+        OutputStream output = response.getOutputStream();
+        ObjectWriter writer = objectMapper.writerFor(ViewStats.class);
+        statService.streamStats(start, end, uris, unique, stats -> {
+            try {
+                output.write(writer.writeValueAsBytes(stats));
+                output.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        output.flush();
     }
 }
@@ -0,0 +1,100 @@
+package ru.practicum.index;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * {@code *} - любые символы внутри сегмента, {@code **} - любое число сегментов, в том числе ноль;
+ * звездочка из самого uri экранируется обратной косой чертой. Поиск видит uri, добавленные до его начала.
+ */
+public final class UriTrie {
+    private static final String ANY_SEGMENTS = "**";
+    private static final String ANY_CHARS = "*";
+    private static final String ESCAPED_ANY_CHARS = "\\*";
+
+    private final Node root = new Node();
+    private final Set<String> known = ConcurrentHashMap.newKeySet();
+
+    public static boolean isPattern(String uri) {
+        for (int i = uri.indexOf('*'); i >= 0; i = uri.indexOf('*', i + 1)) {
+            if (i == 0 || uri.charAt(i - 1) != '\\') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static String unescape(String uri) {
+        return uri.replace(ESCAPED_ANY_CHARS, ANY_CHARS);
+    }
+
+    public void add(String uri) {
+        if (!known.add(uri)) {
+            return;
+        }
+        Node node = root;
+        for (String segment : split(uri)) {
+            node = node.children.computeIfAbsent(segment, s -> new Node());
+        }
+        node.uri = uri;
+    }
+
+    public int size() {
+        return known.size();
+    }
+
+    public Set<String> match(String pattern) {
+        Set<String> result = new LinkedHashSet<>();
+        match(root, split(pattern), 0, result);
+        return result;
+    }
+
+    private static void match(Node node, String[] segments, int index, Set<String> result) {
+        if (index == segments.length) {
+            if (node.uri != null) {
+                result.add(node.uri);
+            }
+            return;
+        }
+        String segment = segments[index];
+        if (segment.equals(ANY_SEGMENTS)) {
+            match(node, segments, index + 1, result);
+            for (Node child : node.children.values()) {
+                match(child, segments, index, result);
+            }
+        } else if (isPattern(segment)) {
+            Pattern regex = toRegex(segment);
+            for (Map.Entry<String, Node> child : node.children.entrySet()) {
+                if (regex.matcher(child.getKey()).matches()) {
+                    match(child.getValue(), segments, index + 1, result);
+                }
+            }
+        } else {
+            Node child = node.children.get(unescape(segment));
+            if (child != null) {
+                match(child, segments, index + 1, result);
+            }
+        }
+    }
+
+    private static Pattern toRegex(String segment) {
+        String[] parts = segment.split("(?<!\\\\)\\*", -1);
+        StringBuilder regex = new StringBuilder(Pattern.quote(unescape(parts[0])));
+        for (int i = 1; i < parts.length; i++) {
+            regex.append(".*").append(Pattern.quote(unescape(parts[i])));
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    private static String[] split(String uri) {
+        return uri.split("/", -1);
+    }
+
+    private static final class Node {
+        private final Map<String, Node> children = new ConcurrentHashMap<>();
+        private volatile String uri;
+    }
+}
@@ -5,9 +5,14 @@ import org.mapstruct.Mapping;
 import ru.practicum.dto.EndpointHitDto;
 import ru.practicum.model.EndpointHit;
 
+import java.util.List;
+
 @Mapper(componentModel = "spring")
 public interface HitMapper {
 
     @Mapping(target = "id", ignore = true)
+    @Mapping(target = "timestamp", defaultExpression = "java(java.time.LocalDateTime.now())")
     EndpointHit toHit(EndpointHitDto dto);
+
+    List<EndpointHit> toHits(List<EndpointHitDto> dtos);
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+package ru.practicum.model;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+
+/**
+ * Строки сравниваются по кодовым точкам, как COLLATE "C" в базе, поэтому ключи блокируются в одном порядке
+ * и при пакетной записи из Java, и в запросах с ORDER BY.
+ */
+public record BucketKey(String app, String uri, LocalDateTime bucket) implements Comparable<BucketKey> {
+    public static final Comparator<String> CODE_POINT_ORDER = BucketKey::compareCodePoints;
+    private static final Comparator<BucketKey> ORDER = Comparator.comparing(BucketKey::app, CODE_POINT_ORDER)
+            .thenComparing(BucketKey::uri, CODE_POINT_ORDER)
+            .thenComparing(BucketKey::bucket);
+
+    public static BucketKey of(EndpointHit hit) {
+        return new BucketKey(hit.getApp(), hit.getUri(), hit.getTimestamp().truncatedTo(ChronoUnit.HOURS));
+    }
+
+    @Override
+    public int compareTo(BucketKey other) {
+        return ORDER.compare(this, other);
+    }
+
+    private static int compareCodePoints(String left, String right) {
+        int i = 0;
+        int j = 0;
+        while (i < left.length() && j < right.length()) {
+            int a = left.codePointAt(i);
+            int b = right.codePointAt(j);
+            if (a != b) {
+                return Integer.compare(a, b);
+            }
+            i += Character.charCount(a);
+            j += Character.charCount(b);
+        }
+        return Integer.compare(left.length() - i, right.length() - j);
+    }
+}
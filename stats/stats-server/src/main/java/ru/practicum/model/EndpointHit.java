@@ -31,4 +31,9 @@ public class EndpointHit {
 
     @Column(name = "request_date")
     private LocalDateTime timestamp;
+
+    /**
+     * Сколько хитов представляет эта запись: больше единицы, если при перегрузке хиты записывались выборочно.
+     */
+    private int weight = 1;
 }
@@ -0,0 +1,30 @@
+package ru.practicum.model;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Сырые хиты раньше границы сжатия удалены, поэтому край, попавший туда, расширяется до целого часа.
+ */
+public final class HourAlignment {
+
+    private HourAlignment() {
+    }
+
+    public static LocalDateTime start(LocalDateTime from, LocalDateTime compactedBefore) {
+        return compactedBefore != null && from.isBefore(compactedBefore) ? floor(from) : ceil(from);
+    }
+
+    public static LocalDateTime end(LocalDateTime to, LocalDateTime compactedBefore) {
+        return compactedBefore != null && to.isBefore(compactedBefore) ? ceil(to) : floor(to);
+    }
+
+    public static LocalDateTime floor(LocalDateTime time) {
+        return time.truncatedTo(ChronoUnit.HOURS);
+    }
+
+    public static LocalDateTime ceil(LocalDateTime time) {
+        LocalDateTime floor = floor(time);
+        return floor.equals(time) ? floor : floor.plusHours(1);
+    }
+}
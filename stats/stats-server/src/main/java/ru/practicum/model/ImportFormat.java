@@ -0,0 +1,9 @@
+package ru.practicum.model;
+
+public enum ImportFormat {
+    /**
+     * Строка заголовка необязательна, поля можно брать в кавычки.
+     */
+    CSV,
+    NDJSON
+}
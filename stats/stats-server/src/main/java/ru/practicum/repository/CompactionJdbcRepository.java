@@ -0,0 +1,38 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.config.ConditionalOnJdbcStorage;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+@ConditionalOnJdbcStorage
+@RequiredArgsConstructor
+public class CompactionJdbcRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public LocalDateTime findCompactedBefore() {
+        List<Timestamp> found = jdbcTemplate.queryForList("SELECT compacted_before FROM stat_compaction WHERE id = 1",
+                Timestamp.class);
+        return found.isEmpty() ? null : found.get(0).toLocalDateTime();
+    }
+
+    public void advance(LocalDateTime compactedBefore) {
+        jdbcTemplate.update("INSERT INTO stat_compaction (id, compacted_before) VALUES (1, ?) " +
+                "ON CONFLICT (id) DO UPDATE SET compacted_before = " +
+                "GREATEST(stat_compaction.compacted_before, EXCLUDED.compacted_before)", Timestamp.valueOf(compactedBefore));
+    }
+
+    /**
+     * Вызывается после удаления целых секций, поэтому затрагиваются только пограничная секция и секция по умолчанию.
+     */
+    public int deleteBefore(String table, LocalDateTime before, int limit) {
+        return jdbcTemplate.update("DELETE FROM " + table + " WHERE (id, request_date) IN (" +
+                "SELECT id, request_date FROM " + table + " WHERE request_date < ? LIMIT ?)",
+                Timestamp.valueOf(before), limit);
+    }
+}
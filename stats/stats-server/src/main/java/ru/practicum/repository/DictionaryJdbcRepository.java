@@ -0,0 +1,66 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.config.ConditionalOnJdbcStorage;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Новые значения фиксируются сразу, до транзакции записи хитов, поэтому закешированный идентификатор
+ * не пропадет при ее откате.
+ */
+@Repository
+@ConditionalOnJdbcStorage
+@RequiredArgsConstructor
+public class DictionaryJdbcRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public Map<String, Integer> getOrCreateAppIds(Collection<String> apps) {
+        return getOrCreate("stat_app", "name", apps);
+    }
+
+    public Map<String, Integer> getOrCreateUriIds(Collection<String> uris) {
+        return getOrCreate("stat_uri", "uri", uris);
+    }
+
+    /**
+     * Отсортированный порядок вставки исключает взаимоблокировки параллельных вставок.
+     */
+    private Map<String, Integer> getOrCreate(String table, String column, Collection<String> values) {
+        return jdbcTemplate.execute((ConnectionCallback<Map<String, Integer>>) connection -> {
+            Map<String, Integer> ids = new HashMap<>();
+            Array array = connection.createArrayOf("text", values.toArray());
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + table + " (" + column + ") " +
+                    "SELECT v FROM unnest(?::text[]) AS v ORDER BY v ON CONFLICT (" + column + ") DO NOTHING " +
+                    "RETURNING id, " + column)) {
+                insert.setArray(1, array);
+                collect(insert, ids);
+            }
+            if (ids.size() < values.size()) {
+                try (PreparedStatement select = connection.prepareStatement("SELECT id, " + column + " FROM " + table +
+                        " WHERE " + column + " = ANY(?::text[])")) {
+                    select.setArray(1, array);
+                    collect(select, ids);
+                }
+            }
+            return ids;
+        });
+    }
+
+    private static void collect(PreparedStatement statement, Map<String, Integer> ids) throws SQLException {
+        try (ResultSet rs = statement.executeQuery()) {
+            while (rs.next()) {
+                ids.put(rs.getString(2), rs.getInt(1));
+            }
+        }
+    }
+}
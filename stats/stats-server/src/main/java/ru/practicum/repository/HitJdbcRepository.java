@@ -0,0 +1,329 @@
+package ru.practicum.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.config.ConditionalOnJdbcStorage;
+import ru.practicum.config.StatsProperties;
+import ru.practicum.dto.UriWindow;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.dto.ViewStatsBucket;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.BucketKey;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.HourAlignment;
+import ru.practicum.sketch.HyperLogLog;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * JPA с IDENTITY-ключом не батчит вставки, поэтому массовая запись идет мимо Hibernate.
+ * Число хитов - сумма весов записей (см. {@link EndpointHit#getWeight()}).
+ */
+@Repository
+@ConditionalOnJdbcStorage
+public class HitJdbcRepository {
+    static final RowMapper<ViewStats> VIEW_STATS_MAPPER = (rs, rowNum) ->
+            new ViewStats(rs.getString("app_name"), rs.getString("uri"), rs.getLong("hits"));
+    private static final int BATCH_SIZE = 1000;
+    private static final int FETCH_SIZE = 10_000;
+    private static final int WINDOWS_CHUNK_SIZE = 1000;
+    private static final String INSERT_HIT = "INSERT INTO statistic (app_name, uri, ip, request_date, weight) " +
+            "VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_ENCODED_HIT = "INSERT INTO statistic_encoded " +
+            "(app_id, uri_id, ip, request_date, weight) VALUES (?, ?, ?::inet, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final String rawView;
+
+    public HitJdbcRepository(JdbcTemplate jdbcTemplate,
+                             NamedParameterJdbcTemplate namedJdbcTemplate,
+                             StatsProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.rawView = properties.getStorage().rawView();
+    }
+
+    public void saveAll(List<EndpointHit> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_HIT, hits, BATCH_SIZE, (ps, hit) -> {
+            ps.setString(1, hit.getApp());
+            ps.setString(2, hit.getUri());
+            ps.setString(3, hit.getIp());
+            ps.setTimestamp(4, Timestamp.valueOf(hit.getTimestamp()));
+            ps.setInt(5, hit.getWeight());
+        });
+    }
+
+    public void saveAllEncoded(List<EndpointHit> hits, ToIntFunction<String> appIds, ToIntFunction<String> uriIds) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_ENCODED_HIT, hits, BATCH_SIZE, (ps, hit) -> {
+            ps.setInt(1, appIds.applyAsInt(hit.getApp()));
+            ps.setInt(2, uriIds.applyAsInt(hit.getUri()));
+            ps.setString(3, hit.getIp());
+            ps.setTimestamp(4, Timestamp.valueOf(hit.getTimestamp()));
+            ps.setInt(5, hit.getWeight());
+        });
+    }
+
+    public List<ViewStats> getStats(LocalDateTime from,
+                                    LocalDateTime to,
+                                    boolean toInclusive,
+                                    List<String> uris,
+                                    boolean unique) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String sql = "SELECT app_name, uri, " + (unique ? "COUNT(DISTINCT ip)" : "SUM(weight)") + " AS hits " +
+                "FROM " + rawView + " " +
+                where(params, from, to, toInclusive, uris) +
+                "GROUP BY app_name, uri ORDER BY hits DESC";
+        return namedJdbcTemplate.query(sql, params, VIEW_STATS_MAPPER);
+    }
+
+    public void addDistinctIps(Map<AppUri, HyperLogLog> target,
+                               LocalDateTime from,
+                               LocalDateTime to,
+                               boolean toInclusive,
+                               List<String> uris) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String sql = "SELECT DISTINCT app_name, uri, ip FROM " + rawView + " " + where(params, from, to, toInclusive, uris);
+        namedJdbcTemplate.query(sql, params, rs -> {
+            target.computeIfAbsent(new AppUri(rs.getString("app_name"), rs.getString("uri")), key -> new HyperLogLog())
+                    .add(rs.getString("ip"));
+        });
+    }
+
+    public void addDistinctIps(Map<BucketKey, HyperLogLog> target,
+                               LocalDateTime from,
+                               LocalDateTime to,
+                               ChronoUnit interval,
+                               List<String> uris) {
+        MapSqlParameterSource params = new MapSqlParameterSource().addValue("unit", unit(interval));
+        String sql = "SELECT DISTINCT app_name, uri, date_trunc(:unit, request_date) AS bucket, ip FROM " + rawView + " " +
+                where(params, from, to, true, uris);
+        namedJdbcTemplate.query(sql, params, rs -> {
+            target.computeIfAbsent(new BucketKey(rs.getString("app_name"), rs.getString("uri"),
+                            rs.getTimestamp("bucket").toLocalDateTime()), key -> new HyperLogLog())
+                    .add(rs.getString("ip"));
+        });
+    }
+
+    /**
+     * Группировка и сортировка выполняются в базе, в памяти одновременно не больше fetchSize строк.
+     */
+    public void streamStats(LocalDateTime from,
+                            LocalDateTime to,
+                            List<String> uris,
+                            boolean unique,
+                            LocalDateTime compactedBefore,
+                            int fetchSize,
+                            Consumer<ViewStats> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String sql;
+        if (unique) {
+            sql = "SELECT app_name, uri, COUNT(DISTINCT ip) AS hits FROM " + rawView + " " +
+                    where(params, from, to, true, uris) +
+                    "GROUP BY app_name, uri ORDER BY hits DESC";
+        } else {
+            sql = hitsQuery(params, from, to, uris, compactedBefore) + " ORDER BY hits DESC";
+        }
+        NamedParameterJdbcTemplate cursorTemplate = new NamedParameterJdbcTemplate(cursorJdbcTemplate(fetchSize));
+        cursorTemplate.query(sql, params, rs -> {
+            consumer.accept(VIEW_STATS_MAPPER.mapRow(rs, 0));
+        });
+    }
+
+    public List<ViewStats> getTop(LocalDateTime from, LocalDateTime to, int k, LocalDateTime compactedBefore) {
+        MapSqlParameterSource params = new MapSqlParameterSource().addValue("k", k);
+        String sql = hitsQuery(params, from, to, null, compactedBefore) + " ORDER BY hits DESC LIMIT :k";
+        return namedJdbcTemplate.query(sql, params, VIEW_STATS_MAPPER);
+    }
+
+    /**
+     * В сжатой области поминутный ряд тоже строится по агрегатам: сжатый час - одна точка на его начале.
+     */
+    public List<ViewStatsBucket> getSeries(LocalDateTime from,
+                                           LocalDateTime to,
+                                           ChronoUnit interval,
+                                           List<String> uris,
+                                           boolean unique,
+                                           LocalDateTime compactedBefore) {
+        MapSqlParameterSource params = new MapSqlParameterSource().addValue("unit", unit(interval));
+        String source;
+        String hits;
+        boolean compacted = compactedBefore != null && from.isBefore(compactedBefore);
+        if (unique || interval == ChronoUnit.MINUTES && !compacted) {
+            source = "SELECT app_name, uri, request_date, ip, weight FROM " + rawView + " " + where(params, from, to, true, uris);
+            hits = unique ? "COUNT(DISTINCT ip)" : "SUM(weight)";
+        } else {
+            source = hitsParts(params, from, to, uris, compactedBefore);
+            hits = "SUM(hits)";
+        }
+        String sql = "SELECT app_name, uri, date_trunc(:unit, request_date) AS bucket, " + hits + " AS hits " +
+                "FROM (" + source + ") AS parts GROUP BY 1, 2, 3 ORDER BY 1, 2, 3";
+        return namedJdbcTemplate.query(sql, params, (rs, rowNum) -> new ViewStatsBucket(rs.getString("app_name"),
+                rs.getString("uri"), rs.getTimestamp("bucket").toLocalDateTime(), rs.getLong("hits")));
+    }
+
+    /**
+     * Результат в порядке windows; интервалы передаются списком VALUES, и пачка считается одним запросом.
+     */
+    public long[] getWindowStats(List<UriWindow> windows, boolean unique, LocalDateTime compactedBefore) {
+        long[] hits = new long[windows.size()];
+        for (int offset = 0; offset < windows.size(); offset += WINDOWS_CHUNK_SIZE) {
+            List<UriWindow> chunk = windows.subList(offset, Math.min(offset + WINDOWS_CHUNK_SIZE, windows.size()));
+            MapSqlParameterSource params = new MapSqlParameterSource();
+            StringBuilder values = new StringBuilder();
+            for (int i = 0; i < chunk.size(); i++) {
+                UriWindow window = chunk.get(i);
+                LocalDateTime alignedStart = HourAlignment.start(window.getStart(), compactedBefore);
+                LocalDateTime alignedEnd = HourAlignment.end(window.getEnd(), compactedBefore);
+                if (unique || alignedEnd.isBefore(alignedStart)) {
+                    alignedStart = window.getStart();
+                    alignedEnd = window.getStart();
+                }
+                params.addValue("i" + i, offset + i)
+                        .addValue("u" + i, window.getUri())
+                        .addValue("f" + i, window.getStart())
+                        .addValue("t" + i, window.getEnd())
+                        .addValue("as" + i, alignedStart)
+                        .addValue("ae" + i, alignedEnd);
+                values.append(i == 0 ? "" : ", ")
+                        .append("(CAST(:i").append(i).append(" AS INTEGER), CAST(:u").append(i).append(" AS VARCHAR), ")
+                        .append("CAST(:f").append(i).append(" AS TIMESTAMP), CAST(:t").append(i).append(" AS TIMESTAMP), ")
+                        .append("CAST(:as").append(i).append(" AS TIMESTAMP), CAST(:ae").append(i).append(" AS TIMESTAMP))");
+            }
+            String sql = "WITH w (idx, uri, from_date, to_date, aligned_start, aligned_end) AS (VALUES " + values + ") ";
+            if (unique) {
+                sql += "SELECT w.idx, COUNT(DISTINCT s.ip) AS hits FROM w " +
+                        "JOIN " + rawView + " s ON s.uri = w.uri AND s.request_date >= w.from_date " +
+                        "AND s.request_date <= w.to_date GROUP BY w.idx";
+            } else {
+                sql += "SELECT idx, SUM(hits) AS hits FROM (" +
+                        "SELECT w.idx, h.hits FROM w JOIN statistic_hourly h ON h.uri = w.uri " +
+                        "AND h.bucket >= w.aligned_start AND h.bucket < w.aligned_end " +
+                        "UNION ALL " +
+                        "SELECT w.idx, s.weight FROM w JOIN " + rawView + " s ON s.uri = w.uri " +
+                        "AND (s.request_date >= w.from_date AND s.request_date < w.aligned_start " +
+                        "OR s.request_date >= w.aligned_end AND s.request_date <= w.to_date)" +
+                        ") AS parts GROUP BY idx";
+            }
+            namedJdbcTemplate.query(sql, params, rs -> {
+                hits[rs.getInt("idx")] = rs.getLong("hits");
+            });
+        }
+        return hits;
+    }
+
+    public void forEachMinuteCount(LocalDateTime from, Consumer<ViewStatsBucket> consumer) {
+        NamedParameterJdbcTemplate cursorTemplate = new NamedParameterJdbcTemplate(cursorJdbcTemplate(FETCH_SIZE));
+        cursorTemplate.query("SELECT app_name, uri, date_trunc('minute', request_date) AS bucket, SUM(weight) AS hits " +
+                "FROM " + rawView + " WHERE request_date >= :from GROUP BY 1, 2, 3",
+                new MapSqlParameterSource("from", from), rs -> {
+                    consumer.accept(new ViewStatsBucket(rs.getString("app_name"), rs.getString("uri"),
+                            rs.getTimestamp("bucket").toLocalDateTime(), rs.getLong("hits")));
+                });
+    }
+
+    public LocalDateTime[] getTimestampRange() {
+        return jdbcTemplate.query("SELECT min(request_date) AS first, max(request_date) AS last FROM " + rawView,
+                rs -> {
+                    rs.next();
+                    Timestamp first = rs.getTimestamp("first");
+                    return first == null ? null
+                            : new LocalDateTime[]{first.toLocalDateTime(), rs.getTimestamp("last").toLocalDateTime()};
+                });
+    }
+
+    /**
+     * Различные (app, uri, ip) хитов в [from, to); request_date хита - начало часа from.
+     */
+    public void forEachDistinctIp(LocalDateTime from, LocalDateTime to, Consumer<EndpointHit> consumer) {
+        LocalDateTime hour = from.truncatedTo(ChronoUnit.HOURS);
+        cursorJdbcTemplate(FETCH_SIZE).query("SELECT DISTINCT app_name, uri, ip FROM " + rawView +
+                " WHERE request_date >= ? AND request_date < ?", rs -> {
+            EndpointHit hit = new EndpointHit();
+            hit.setApp(rs.getString("app_name"));
+            hit.setUri(rs.getString("uri"));
+            hit.setIp(rs.getString("ip"));
+            hit.setTimestamp(hour);
+            consumer.accept(hit);
+        }, Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+
+    private JdbcTemplate cursorJdbcTemplate(int fetchSize) {
+        JdbcTemplate template = new JdbcTemplate(jdbcTemplate.getDataSource());
+        template.setFetchSize(fetchSize);
+        return template;
+    }
+
+    private String hitsQuery(MapSqlParameterSource params,
+                             LocalDateTime from,
+                             LocalDateTime to,
+                             List<String> uris,
+                             LocalDateTime compactedBefore) {
+        return "SELECT app_name, uri, SUM(hits) AS hits FROM (" + hitsParts(params, from, to, uris, compactedBefore) +
+                ") AS parts GROUP BY app_name, uri";
+    }
+
+    /**
+     * Целые часы из агрегатов (request_date - начало часа), неполные края - из сырых хитов, см. {@link HourAlignment}.
+     */
+    private String hitsParts(MapSqlParameterSource params,
+                             LocalDateTime from,
+                             LocalDateTime to,
+                             List<String> uris,
+                             LocalDateTime compactedBefore) {
+        LocalDateTime alignedStart = HourAlignment.start(from, compactedBefore);
+        LocalDateTime alignedEnd = HourAlignment.end(to, compactedBefore);
+        if (alignedEnd.isBefore(alignedStart)) {
+            alignedStart = from;
+            alignedEnd = from;
+        }
+        params.addValue("from", from)
+                .addValue("to", to)
+                .addValue("alignedStart", alignedStart)
+                .addValue("alignedEnd", alignedEnd);
+        String uriFilter = "";
+        if (uris != null && !uris.isEmpty()) {
+            params.addValue("uris", uris.toArray(String[]::new));
+            uriFilter = "AND uri = ANY(CAST(:uris AS text[])) ";
+        }
+        return "SELECT app_name, uri, bucket AS request_date, hits FROM statistic_hourly " +
+                "WHERE bucket >= :alignedStart AND bucket < :alignedEnd " + uriFilter +
+                "UNION ALL " +
+                "SELECT app_name, uri, request_date, weight FROM " + rawView + " " +
+                "WHERE (request_date >= :from AND request_date < :alignedStart " +
+                "OR request_date >= :alignedEnd AND request_date <= :to) " + uriFilter;
+    }
+
+    private static String unit(ChronoUnit interval) {
+        return interval == ChronoUnit.DAYS ? "day" : interval == ChronoUnit.HOURS ? "hour" : "minute";
+    }
+
+    private static String where(MapSqlParameterSource params,
+                                LocalDateTime from,
+                                LocalDateTime to,
+                                boolean toInclusive,
+                                List<String> uris) {
+        params.addValue("from", from).addValue("to", to);
+        String where = "WHERE request_date >= :from AND request_date " + (toInclusive ? "<= :to " : "< :to ");
+        if (uris != null && !uris.isEmpty()) {
+            params.addValue("uris", uris.toArray(String[]::new));
+            where += "AND uri = ANY(CAST(:uris AS text[])) ";
+        }
+        return where;
+    }
+}
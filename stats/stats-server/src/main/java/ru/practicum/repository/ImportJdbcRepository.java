@@ -0,0 +1,153 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.config.ConditionalOnJdbcStorage;
+import ru.practicum.config.StatsProperties;
+import ru.practicum.model.EndpointHit;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.function.Consumer;
+
+/**
+ * Временная таблица hit_import удаляется при фиксации транзакции.
+ */
+@Repository
+@ConditionalOnJdbcStorage
+@RequiredArgsConstructor
+public class ImportJdbcRepository {
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final int FETCH_SIZE = 10_000;
+    private static final String CREATE_STAGING = "CREATE TEMP TABLE hit_import (" +
+            "app_name VARCHAR(255) NOT NULL, uri VARCHAR(512) NOT NULL, ip VARCHAR(45) NOT NULL, " +
+            "request_date TIMESTAMP NOT NULL) ON COMMIT DROP";
+    private static final String COPY_STAGING = "COPY hit_import (app_name, uri, ip, request_date) FROM STDIN WITH (FORMAT csv)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void createStaging() {
+        jdbcTemplate.execute(CREATE_STAGING);
+    }
+
+    public long copyToStaging(HitSource source) {
+        Long copied = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_STAGING);
+            try {
+                StringBuilder buffer = new StringBuilder(COPY_BUFFER_SIZE);
+                source.writeTo(hit -> {
+                    appendCsv(buffer, hit);
+                    if (buffer.length() >= COPY_BUFFER_SIZE) {
+                        send(copyIn, buffer);
+                    }
+                });
+                send(copyIn, buffer);
+                return copyIn.endCopy();
+            } catch (CopyFailure e) {
+                throw e.getCause();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+        });
+        return copied == null ? 0 : copied;
+    }
+
+    public void moveToRaw(StatsProperties.Encoding encoding) {
+        if (encoding == StatsProperties.Encoding.DICTIONARY) {
+            jdbcTemplate.update("INSERT INTO stat_app (name) SELECT DISTINCT app_name FROM hit_import " +
+                    "ON CONFLICT (name) DO NOTHING");
+            jdbcTemplate.update("INSERT INTO stat_uri (uri) SELECT DISTINCT uri FROM hit_import " +
+                    "ON CONFLICT (uri) DO NOTHING");
+            jdbcTemplate.update("INSERT INTO statistic_encoded (app_id, uri_id, ip, request_date) " +
+                    "SELECT a.id, u.id, i.ip::inet, i.request_date FROM hit_import i " +
+                    "JOIN stat_app a ON a.name = i.app_name " +
+                    "JOIN stat_uri u ON u.uri = i.uri");
+        } else {
+            jdbcTemplate.update("INSERT INTO statistic (app_name, uri, ip, request_date) " +
+                    "SELECT app_name, uri, ip, request_date FROM hit_import");
+        }
+    }
+
+    /**
+     * Строки обновляются в порядке ключа, как и при обычной записи, чтобы не взаимоблокироваться.
+     */
+    public void incrementRollups() {
+        jdbcTemplate.update("INSERT INTO statistic_hourly (app_name, uri, bucket, hits) " +
+                "SELECT app_name, uri, date_trunc('hour', request_date), COUNT(*) FROM hit_import " +
+                "GROUP BY 1, 2, 3 ORDER BY 1, 2, 3 " +
+                "ON CONFLICT (app_name, uri, bucket) DO UPDATE SET hits = statistic_hourly.hits + EXCLUDED.hits");
+    }
+
+    /**
+     * Время хита - начало часа.
+     */
+    public void forEachDistinctIp(Consumer<EndpointHit> consumer) {
+        JdbcTemplate cursorTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        cursorTemplate.setFetchSize(FETCH_SIZE);
+        cursorTemplate.query("SELECT DISTINCT app_name, uri, date_trunc('hour', request_date) AS bucket, ip " +
+                "FROM hit_import ORDER BY 1, 2, 3", rs -> {
+            EndpointHit hit = new EndpointHit();
+            hit.setApp(rs.getString("app_name"));
+            hit.setUri(rs.getString("uri"));
+            hit.setIp(rs.getString("ip"));
+            hit.setTimestamp(rs.getTimestamp("bucket").toLocalDateTime());
+            consumer.accept(hit);
+        });
+    }
+
+    public void forEachUri(Consumer<String> consumer) {
+        jdbcTemplate.query("SELECT DISTINCT uri FROM hit_import", rs -> {
+            consumer.accept(rs.getString("uri"));
+        });
+    }
+
+    private static void send(CopyIn copyIn, StringBuilder buffer) {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+        } catch (SQLException e) {
+            throw new CopyFailure(e);
+        }
+        buffer.setLength(0);
+    }
+
+    private static void appendCsv(StringBuilder buffer, EndpointHit hit) {
+        appendQuoted(buffer, hit.getApp()).append(',');
+        appendQuoted(buffer, hit.getUri()).append(',');
+        appendQuoted(buffer, hit.getIp()).append(',');
+        buffer.append(hit.getTimestamp()).append('\n');
+    }
+
+    private static StringBuilder appendQuoted(StringBuilder buffer, String value) {
+        return buffer.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    @FunctionalInterface
+    public interface HitSource {
+        void writeTo(Consumer<EndpointHit> consumer) throws IOException;
+    }
+
+    private static class CopyFailure extends RuntimeException {
+        private CopyFailure(SQLException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized SQLException getCause() {
+            return (SQLException) super.getCause();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.config.ConditionalOnJdbcStorage;
+
+import java.time.Duration;
+
+/**
+ * Время берется из базы, чтобы не зависеть от часов экземпляров.
+ */
+@Repository
+@ConditionalOnJdbcStorage
+@RequiredArgsConstructor
+public class InstanceJdbcRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public void heartbeat(String id) {
+        jdbcTemplate.update("INSERT INTO stat_instance (id, seen_at) VALUES (?, LOCALTIMESTAMP) " +
+                "ON CONFLICT (id) DO UPDATE SET seen_at = EXCLUDED.seen_at", id);
+    }
+
+    /**
+     * Заодно удаляет экземпляры, не отмечавшиеся дольше timeout.
+     */
+    public int countOthers(String id, Duration timeout) {
+        jdbcTemplate.update("DELETE FROM stat_instance WHERE seen_at < LOCALTIMESTAMP - make_interval(secs => ?)",
+                timeout.toSeconds());
+        Integer count = jdbcTemplate.queryForObject("SELECT count(*) FROM stat_instance WHERE id <> ?",
+                Integer.class, id);
+        return count == null ? 0 : count;
+    }
+
+    public void delete(String id) {
+        jdbcTemplate.update("DELETE FROM stat_instance WHERE id = ?", id);
+    }
+}
@@ -0,0 +1,116 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.config.ConditionalOnJdbcStorage;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Slf4j
+@Repository
+@ConditionalOnJdbcStorage
+@RequiredArgsConstructor
+public class PartitionJdbcRepository {
+    private final JdbcTemplate jdbcTemplate;
+
+    public boolean isPartitioned(String table) {
+        Boolean partitioned = jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM pg_partitioned_table pt " +
+                "JOIN pg_class c ON c.oid = pt.partrelid " +
+                "WHERE c.relname = ? AND pg_table_is_visible(c.oid))", Boolean.class, table);
+        return Boolean.TRUE.equals(partitioned);
+    }
+
+    public List<String> findPartitions(String table) {
+        return jdbcTemplate.queryForList("SELECT c.relname FROM pg_inherits i " +
+                "JOIN pg_class c ON c.oid = i.inhrelid " +
+                "JOIN pg_class p ON p.oid = i.inhparent " +
+                "WHERE p.relname = ? AND pg_table_is_visible(p.oid)", String.class, table);
+    }
+
+    /**
+     * Старая таблица становится секцией по умолчанию; хиты без request_date удаляются.
+     * Возвращает false, если таблица уже секционирована (например, другим экземпляром).
+     */
+    @Transactional
+    public boolean migrateToPartitioned(String table) {
+        String legacy = table + "_default";
+        jdbcTemplate.execute("LOCK TABLE " + table + " IN ACCESS EXCLUSIVE MODE");
+        if (isPartitioned(table)) {
+            return false;
+        }
+        List<String> indexes = jdbcTemplate.queryForList("SELECT i.relname FROM pg_index x " +
+                "JOIN pg_class i ON i.oid = x.indexrelid " +
+                "JOIN pg_class t ON t.oid = x.indrelid " +
+                "WHERE t.relname = ? AND pg_table_is_visible(t.oid)", String.class, table);
+        for (String index : indexes) {
+            jdbcTemplate.execute("ALTER INDEX " + index + " RENAME TO " + legacy + "_" + index);
+        }
+        int withoutDate = jdbcTemplate.update("DELETE FROM " + table + " WHERE request_date IS NULL");
+        if (withoutDate > 0) {
+            log.warn("Из {} удалено {} хитов без request_date", table, withoutDate);
+        }
+        jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN request_date SET NOT NULL");
+        jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN id DROP IDENTITY IF EXISTS");
+        jdbcTemplate.execute("ALTER TABLE " + table + " RENAME TO " + legacy);
+
+        jdbcTemplate.execute("CREATE TABLE " + table + " (LIKE " + legacy + " INCLUDING DEFAULTS, " +
+                "PRIMARY KEY (id, request_date)) PARTITION BY RANGE (request_date)");
+        jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN id ADD GENERATED BY DEFAULT AS IDENTITY");
+        jdbcTemplate.queryForObject("SELECT setval(pg_get_serial_sequence(?, 'id'), " +
+                "COALESCE((SELECT max(id) FROM " + legacy + "), 0) + 1, false)", Long.class, table);
+        jdbcTemplate.execute("ALTER TABLE " + table + " ATTACH PARTITION " + legacy + " DEFAULT");
+        return true;
+    }
+
+    public void applySchema() {
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(jdbcTemplate.getDataSource());
+    }
+
+    public void createDefault(String table) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + table + "_default PARTITION OF " + table + " DEFAULT");
+    }
+
+    /**
+     * Хиты интервала, уже попавшие в секцию по умолчанию, переносятся в той же транзакции, иначе Postgres
+     * отказывается создавать секцию.
+     */
+    @Transactional
+    public void create(String table, String partition, LocalDate from, LocalDate to) {
+        String defaultPartition = table + "_default";
+        Boolean overlaps = jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM " + defaultPartition +
+                " WHERE request_date >= ? AND request_date < ?)", Boolean.class, from, to);
+        if (Boolean.TRUE.equals(overlaps)) {
+            jdbcTemplate.execute("CREATE TEMP TABLE " + partition + "_moved (LIKE " + table + ") ON COMMIT DROP");
+            jdbcTemplate.update("WITH moved AS (DELETE FROM " + defaultPartition +
+                    " WHERE request_date >= ? AND request_date < ? RETURNING *) " +
+                    "INSERT INTO " + partition + "_moved SELECT * FROM moved", from, to);
+        }
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partition + " PARTITION OF " + table +
+                " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+        if (Boolean.TRUE.equals(overlaps)) {
+            int moved = jdbcTemplate.update("INSERT INTO " + table + " SELECT * FROM " + partition + "_moved");
+            log.info("В секцию {} перенесено {} хитов из секции по умолчанию", partition, moved);
+        }
+    }
+
+    /**
+     * На секцию по умолчанию срок хранения по секциям не распространяется.
+     */
+    public int deleteDefaultBefore(String table, LocalDate threshold) {
+        return jdbcTemplate.update("DELETE FROM " + table + "_default WHERE request_date < ?", threshold);
+    }
+
+    public void drop(String partition) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + partition);
+    }
+
+    public void detach(String table, String partition) {
+        jdbcTemplate.execute("ALTER TABLE " + table + " DETACH PARTITION " + partition);
+    }
+}
@@ -0,0 +1,73 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.config.ConditionalOnJdbcStorage;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.model.BucketKey;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.function.Consumer;
+
+@Repository
+@ConditionalOnJdbcStorage
+@RequiredArgsConstructor
+public class RollupJdbcRepository {
+    private static final String UPSERT_HITS = "INSERT INTO statistic_hourly (app_name, uri, bucket, hits) " +
+            "VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (app_name, uri, bucket) DO UPDATE SET hits = statistic_hourly.hits + EXCLUDED.hits";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    /**
+     * Ключи идут в отсортированном порядке, чтобы параллельные транзакции блокировали строки в одной последовательности.
+     */
+    public void increment(SortedMap<BucketKey, Long> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<BucketKey, Long>> entries = new ArrayList<>(hits.entrySet());
+        jdbcTemplate.batchUpdate(UPSERT_HITS, entries, entries.size(), (ps, entry) -> {
+            ps.setString(1, entry.getKey().app());
+            ps.setString(2, entry.getKey().uri());
+            ps.setTimestamp(3, Timestamp.valueOf(entry.getKey().bucket()));
+            ps.setLong(4, entry.getValue());
+        });
+    }
+
+    public List<ViewStats> getStats(LocalDateTime from, LocalDateTime to, List<String> uris) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        StringBuilder sql = new StringBuilder("SELECT app_name, uri, SUM(hits) AS hits " +
+                "FROM statistic_hourly " +
+                "WHERE bucket >= :from AND bucket < :to ");
+        if (uris != null && !uris.isEmpty()) {
+            sql.append("AND uri = ANY(CAST(:uris AS text[])) ");
+            params.addValue("uris", uris.toArray(String[]::new));
+        }
+        sql.append("GROUP BY app_name, uri");
+        return namedJdbcTemplate.query(sql.toString(), params, HitJdbcRepository.VIEW_STATS_MAPPER);
+    }
+
+    public void forEachUri(LocalDateTime since, Consumer<String> consumer) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String sql = "SELECT DISTINCT uri FROM statistic_hourly";
+        if (since != null) {
+            sql += " WHERE bucket >= :since";
+            params.addValue("since", since);
+        }
+        namedJdbcTemplate.query(sql, params, rs -> {
+            consumer.accept(rs.getString("uri"));
+        });
+    }
+}
@@ -0,0 +1,36 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.config.ConditionalOnJdbcStorage;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+
+@Repository
+@ConditionalOnJdbcStorage
+@RequiredArgsConstructor
+public class SampledHourJdbcRepository {
+    private static final String INSERT_HOUR = "INSERT INTO stat_sampled_hour (bucket) VALUES (?) ON CONFLICT DO NOTHING";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void markSampled(SortedSet<LocalDateTime> hours) {
+        if (hours.isEmpty()) {
+            return;
+        }
+        List<LocalDateTime> buckets = new ArrayList<>(hours);
+        jdbcTemplate.batchUpdate(INSERT_HOUR, buckets, buckets.size(), (ps, bucket) -> {
+            ps.setTimestamp(1, Timestamp.valueOf(bucket));
+        });
+    }
+
+    public List<LocalDateTime> findAll() {
+        return jdbcTemplate.query("SELECT bucket FROM stat_sampled_hour",
+                (rs, rowNum) -> rs.getTimestamp("bucket").toLocalDateTime());
+    }
+}
@@ -0,0 +1,143 @@
+package ru.practicum.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.config.ConditionalOnJdbcStorage;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.BucketKey;
+import ru.practicum.sketch.HyperLogLog;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+@Repository
+@ConditionalOnJdbcStorage
+@RequiredArgsConstructor
+public class SketchJdbcRepository {
+    private static final String INSERT_EMPTY = "INSERT INTO statistic_hourly_hll (app_name, uri, bucket, sketch) " +
+            "VALUES (?, ?, ?, ?) ON CONFLICT (app_name, uri, bucket) DO NOTHING";
+    private static final String SELECT_FOR_UPDATE = "SELECT h.app_name, h.uri, h.bucket, h.sketch " +
+            "FROM statistic_hourly_hll h " +
+            "JOIN unnest(?::text[], ?::text[], ?::timestamp[]) AS k (app_name, uri, bucket) " +
+            "ON h.app_name = k.app_name AND h.uri = k.uri AND h.bucket = k.bucket " +
+            "ORDER BY h.app_name COLLATE \"C\", h.uri COLLATE \"C\", h.bucket FOR UPDATE OF h";
+    private static final String UPDATE_SKETCH = "UPDATE statistic_hourly_hll SET sketch = ? " +
+            "WHERE app_name = ? AND uri = ? AND bucket = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    /**
+     * Строки вставляются и блокируются в порядке ключей (см. {@link BucketKey}), поэтому параллельные
+     * транзакции не взаимоблокируются.
+     */
+    public void merge(SortedMap<BucketKey, HyperLogLog> sketches) {
+        if (sketches.isEmpty()) {
+            return;
+        }
+        List<BucketKey> keys = new ArrayList<>(sketches.keySet());
+        byte[] empty = new HyperLogLog().toBytes();
+        jdbcTemplate.batchUpdate(INSERT_EMPTY, keys, keys.size(), (ps, key) -> {
+            ps.setString(1, key.app());
+            ps.setString(2, key.uri());
+            ps.setTimestamp(3, Timestamp.valueOf(key.bucket()));
+            ps.setBytes(4, empty);
+        });
+
+        String[] apps = new String[keys.size()];
+        String[] uris = new String[keys.size()];
+        Timestamp[] buckets = new Timestamp[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            apps[i] = keys.get(i).app();
+            uris[i] = keys.get(i).uri();
+            buckets[i] = Timestamp.valueOf(keys.get(i).bucket());
+        }
+        List<Map.Entry<BucketKey, byte[]>> updated = new ArrayList<>(keys.size());
+        jdbcTemplate.query(SELECT_FOR_UPDATE, ps -> {
+            ps.setArray(1, ps.getConnection().createArrayOf("text", apps));
+            ps.setArray(2, ps.getConnection().createArrayOf("text", uris));
+            ps.setArray(3, ps.getConnection().createArrayOf("timestamp", buckets));
+        }, rs -> {
+            BucketKey key = new BucketKey(rs.getString("app_name"), rs.getString("uri"),
+                    rs.getTimestamp("bucket").toLocalDateTime());
+            HyperLogLog sketch = HyperLogLog.fromBytes(rs.getBytes("sketch"));
+            sketch.merge(sketches.get(key));
+            updated.add(Map.entry(key, sketch.toBytes()));
+        });
+        jdbcTemplate.batchUpdate(UPDATE_SKETCH, updated, updated.size(), (ps, entry) -> {
+            ps.setBytes(1, entry.getValue());
+            ps.setString(2, entry.getKey().app());
+            ps.setString(3, entry.getKey().uri());
+            ps.setTimestamp(4, Timestamp.valueOf(entry.getKey().bucket()));
+        });
+    }
+
+    /**
+     * [следующий час, час окончания) или null, если заполнение еще не начиналось.
+     */
+    public LocalDateTime[] findBackfill() {
+        List<LocalDateTime[]> found = jdbcTemplate.query("SELECT next_hour, until_hour FROM stat_sketch_backfill " +
+                "WHERE id = 1", (rs, rowNum) -> new LocalDateTime[]{rs.getTimestamp("next_hour").toLocalDateTime(),
+                rs.getTimestamp("until_hour").toLocalDateTime()});
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    public void startBackfill(LocalDateTime next, LocalDateTime until) {
+        jdbcTemplate.update("INSERT INTO stat_sketch_backfill (id, next_hour, until_hour) VALUES (1, ?, ?) " +
+                "ON CONFLICT (id) DO NOTHING", Timestamp.valueOf(next), Timestamp.valueOf(until));
+    }
+
+    public void advanceBackfill(LocalDateTime next) {
+        jdbcTemplate.update("UPDATE stat_sketch_backfill SET next_hour = ? WHERE id = 1 AND next_hour < ?",
+                Timestamp.valueOf(next), Timestamp.valueOf(next));
+    }
+
+    public void resetBackfill() {
+        jdbcTemplate.update("DELETE FROM stat_sketch_backfill");
+    }
+
+    public void mergeInto(Map<AppUri, HyperLogLog> target, LocalDateTime from, LocalDateTime to, List<String> uris) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        StringBuilder sql = new StringBuilder("SELECT app_name, uri, sketch FROM statistic_hourly_hll " +
+                "WHERE bucket >= :from AND bucket < :to ");
+        if (uris != null && !uris.isEmpty()) {
+            sql.append("AND uri = ANY(CAST(:uris AS text[]))");
+            params.addValue("uris", uris.toArray(String[]::new));
+        }
+        namedJdbcTemplate.query(sql.toString(), params, rs -> {
+            target.computeIfAbsent(new AppUri(rs.getString("app_name"), rs.getString("uri")), key -> new HyperLogLog())
+                    .merge(HyperLogLog.fromBytes(rs.getBytes("sketch")));
+        });
+    }
+
+    public void mergeInto(Map<BucketKey, HyperLogLog> target,
+                          LocalDateTime from,
+                          LocalDateTime to,
+                          ChronoUnit interval,
+                          List<String> uris) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to);
+        StringBuilder sql = new StringBuilder("SELECT app_name, uri, bucket, sketch FROM statistic_hourly_hll " +
+                "WHERE bucket >= :from AND bucket < :to ");
+        if (uris != null && !uris.isEmpty()) {
+            sql.append("AND uri = ANY(CAST(:uris AS text[]))");
+            params.addValue("uris", uris.toArray(String[]::new));
+        }
+        namedJdbcTemplate.query(sql.toString(), params, rs -> {
+            BucketKey key = new BucketKey(rs.getString("app_name"), rs.getString("uri"),
+                    rs.getTimestamp("bucket").toLocalDateTime().truncatedTo(interval));
+            target.computeIfAbsent(key, k -> new HyperLogLog()).merge(HyperLogLog.fromBytes(rs.getBytes("sketch")));
+        });
+    }
+}
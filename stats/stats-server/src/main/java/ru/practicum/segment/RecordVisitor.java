@@ -0,0 +1,6 @@
+package ru.practicum.segment;
+
+@FunctionalInterface
+public interface RecordVisitor {
+    void visit(long time, int appId, int uriId, long ipHash);
+}
@@ -0,0 +1,134 @@
+package ru.practicum.segment;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Пишет один поток за раз, читать можно параллельно: число записей публикуется после самих записей.
+ */
+final class Segment implements Closeable {
+    static final int RECORD_SIZE = 24;
+    private static final int HEADER_SIZE = 64;
+    private static final int BLOCK_RECORDS = 4096;
+
+    private final long spanStart;
+    private final int sequence;
+    private final int capacity;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final long[] blockMin;
+    private final long[] blockMax;
+    private volatile int count;
+    private volatile boolean sealed;
+
+    private Segment(Path path, long spanStart, int sequence, int capacity) throws IOException {
+        this.spanStart = spanStart;
+        this.sequence = sequence;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // у существующего файла емкость берется из его размера, даже если настройка с тех пор поменялась
+        long size = channel.size();
+        this.capacity = size > HEADER_SIZE ? (int) ((size - HEADER_SIZE) / RECORD_SIZE) : capacity;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) this.capacity * RECORD_SIZE);
+        int blocks = (this.capacity + BLOCK_RECORDS - 1) / BLOCK_RECORDS;
+        this.blockMin = new long[blocks];
+        this.blockMax = new long[blocks];
+        int stored = (int) Math.min(buffer.getLong(0), this.capacity);
+        for (int i = 0; i < stored; i++) {
+            index(i, buffer.getLong(position(i)));
+        }
+        this.count = stored;
+    }
+
+    static Segment open(Path path, long spanStart, int sequence, int capacity) throws IOException {
+        return new Segment(path, spanStart, sequence, capacity);
+    }
+
+    long spanStart() {
+        return spanStart;
+    }
+
+    int sequence() {
+        return sequence;
+    }
+
+    synchronized boolean append(long time, int appId, int uriId, long ipHash) {
+        int index = count;
+        if (sealed || index == capacity) {
+            return false;
+        }
+        int position = position(index);
+        buffer.putLong(position, time);
+        buffer.putInt(position + 8, appId);
+        buffer.putInt(position + 12, uriId);
+        buffer.putLong(position + 16, ipHash);
+        index(index, time);
+        buffer.putLong(0, index + 1);
+        count = index + 1;
+        return true;
+    }
+
+    void scan(long from, long to, RecordVisitor visitor) {
+        int stored = count;
+        for (int block = 0; block * BLOCK_RECORDS < stored; block++) {
+            if (blockMax[block] < from || blockMin[block] > to) {
+                continue;
+            }
+            int end = Math.min(stored, (block + 1) * BLOCK_RECORDS);
+            for (int i = block * BLOCK_RECORDS; i < end; i++) {
+                int position = position(i);
+                long time = buffer.getLong(position);
+                if (time >= from && time <= to) {
+                    visitor.visit(time, buffer.getInt(position + 8), buffer.getInt(position + 12),
+                            buffer.getLong(position + 16));
+                }
+            }
+        }
+    }
+
+    boolean isFull() {
+        return count == capacity;
+    }
+
+    boolean isSealed() {
+        return sealed;
+    }
+
+    void force() {
+        if (!sealed) {
+            buffer.force();
+        }
+    }
+
+    synchronized void seal() throws IOException {
+        if (sealed) {
+            return;
+        }
+        buffer.force();
+        channel.close();
+        sealed = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        seal();
+    }
+
+    private void index(int index, long time) {
+        int block = index / BLOCK_RECORDS;
+        if (index % BLOCK_RECORDS == 0) {
+            blockMin[block] = time;
+            blockMax[block] = time;
+        } else {
+            blockMin[block] = Math.min(blockMin[block], time);
+            blockMax[block] = Math.max(blockMax[block], time);
+        }
+    }
+
+    private static int position(int index) {
+        return HEADER_SIZE + index * RECORD_SIZE;
+    }
+}
@@ -0,0 +1,279 @@
+package ru.practicum.segment;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Заполненный сегмент продолжается следующим файлом с тем же началом промежутка; запечатанные сегменты
+ * не сбрасываются на диск, и запоздавший хит в такой промежуток открывает новый файл.
+ */
+@Slf4j
+public final class SegmentStore implements Closeable {
+    private static final Pattern SEGMENT_FILE = Pattern.compile("segment-(-?\\d+)-(\\d+)\\.dat");
+    private static final String DICTIONARY_FILE = "dictionary.log";
+
+    private final Path directory;
+    private final long spanMillis;
+    private final int capacity;
+    private final Dictionary apps = new Dictionary();
+    private final Dictionary uris = new Dictionary();
+    private final NavigableMap<Long, List<Segment>> segments = new ConcurrentSkipListMap<>();
+    private final Set<Segment> active = ConcurrentHashMap.newKeySet();
+    private final FileChannel dictionaryLog;
+
+    public SegmentStore(Path directory, Duration span, int capacity) {
+        this.directory = directory;
+        this.spanMillis = span.toMillis();
+        this.capacity = capacity;
+        try {
+            Files.createDirectories(directory);
+            Path dictionaryPath = directory.resolve(DICTIONARY_FILE);
+            if (Files.exists(dictionaryPath)) {
+                loadDictionary(dictionaryPath);
+            }
+            dictionaryLog = FileChannel.open(dictionaryPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            loadSegments();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.info("Открыто хранилище сегментов {}: {} промежутков, {} приложений, {} uri",
+                directory, segments.size(), apps.size(), uris.size());
+    }
+
+    public void append(long time, String app, String uri, long ipHash) {
+        int appId = id(apps, 'A', app);
+        int uriId = id(uris, 'U', uri);
+        long spanStart = Math.floorDiv(time, spanMillis) * spanMillis;
+        List<Segment> span = segments.computeIfAbsent(spanStart, key -> new CopyOnWriteArrayList<>());
+        while (true) {
+            Segment last = span.isEmpty() ? null : span.get(span.size() - 1);
+            if (last != null && last.append(time, appId, uriId, ipHash)) {
+                return;
+            }
+            roll(span, spanStart, last);
+        }
+    }
+
+    public void scan(long from, long to, RecordVisitor visitor) {
+        long firstSpan = Math.floorDiv(from, spanMillis) * spanMillis;
+        for (List<Segment> span : segments.subMap(firstSpan, true, to, true).values()) {
+            for (Segment segment : span) {
+                segment.scan(from, to, visitor);
+            }
+        }
+    }
+
+    public int uriId(String uri) {
+        return uris.ids.getOrDefault(uri, -1);
+    }
+
+    public List<String> uris() {
+        return List.copyOf(uris.ids.keySet());
+    }
+
+    public String app(int id) {
+        return apps.name(id);
+    }
+
+    public String uri(int id) {
+        return uris.name(id);
+    }
+
+    public void force(long now) {
+        for (Segment segment : active) {
+            if (segment.isFull() || segment.spanStart() + 2 * spanMillis <= now) {
+                seal(segment);
+            } else {
+                segment.force();
+            }
+        }
+        try {
+            dictionaryLog.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (List<Segment> span : segments.values()) {
+            for (Segment segment : span) {
+                segment.close();
+            }
+        }
+        active.clear();
+        dictionaryLog.close();
+    }
+
+    private void seal(Segment segment) {
+        try {
+            segment.seal();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        active.remove(segment);
+    }
+
+    private void open(List<Segment> span, Path path, long spanStart, int sequence) throws IOException {
+        Segment segment = Segment.open(path, spanStart, sequence, capacity);
+        span.add(segment);
+        active.add(segment);
+    }
+
+    private void roll(List<Segment> span, long spanStart, Segment full) {
+        synchronized (span) {
+            Segment last = span.isEmpty() ? null : span.get(span.size() - 1);
+            if (last != full) {
+                return;
+            }
+            int sequence = last == null ? 0 : last.sequence() + 1;
+            try {
+                open(span, segmentPath(spanStart, sequence), spanStart, sequence);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private int id(Dictionary dictionary, char kind, String name) {
+        Integer id = dictionary.ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (dictionary) {
+            id = dictionary.ids.get(name);
+            if (id != null) {
+                return id;
+            }
+            int newId = dictionary.size();
+            String line = kind + "\t" + newId + "\t" + escape(name) + "\n";
+            try {
+                dictionaryLog.write(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            dictionary.put(newId, name);
+            return newId;
+        }
+    }
+
+    private void loadDictionary(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", 3);
+                if (parts.length < 3) {
+                    // недописанная при аварийной остановке строка
+                    continue;
+                }
+                Dictionary dictionary = parts[0].equals("A") ? apps : uris;
+                dictionary.put(Integer.parseInt(parts[1]), unescape(parts[2]));
+            }
+        }
+    }
+
+    private static String escape(String name) {
+        if (name.indexOf('\\') < 0 && name.indexOf('\n') < 0 && name.indexOf('\r') < 0) {
+            return name;
+        }
+        StringBuilder escaped = new StringBuilder(name.length() + 8);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            switch (c) {
+                case '\\' -> escaped.append("\\\\");
+                case '\n' -> escaped.append("\\n");
+                case '\r' -> escaped.append("\\r");
+                default -> escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static String unescape(String line) {
+        if (line.indexOf('\\') < 0) {
+            return line;
+        }
+        StringBuilder name = new StringBuilder(line.length());
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\\' && i + 1 < line.length()) {
+                char next = line.charAt(++i);
+                name.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                name.append(c);
+            }
+        }
+        return name.toString();
+    }
+
+    private void loadSegments() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*.dat")) {
+            for (Path file : files) {
+                Matcher matcher = SEGMENT_FILE.matcher(file.getFileName().toString());
+                if (!matcher.matches()) {
+                    continue;
+                }
+                long spanStart = Long.parseLong(matcher.group(1));
+                int sequence = Integer.parseInt(matcher.group(2));
+                open(segments.computeIfAbsent(spanStart, key -> new CopyOnWriteArrayList<>()), file, spanStart, sequence);
+            }
+        }
+        for (List<Segment> span : segments.values()) {
+            List<Segment> ordered = new ArrayList<>(span);
+            ordered.sort((a, b) -> Integer.compare(a.sequence(), b.sequence()));
+            span.clear();
+            span.addAll(ordered);
+        }
+    }
+
+    private Path segmentPath(long spanStart, int sequence) {
+        return directory.resolve("segment-" + spanStart + "-" + sequence + ".dat");
+    }
+
+    /**
+     * Копирующий при записи список на сотнях тысяч uri делал бы добавление квадратичным.
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+        private final List<String> names = new ArrayList<>();
+
+        private synchronized void put(int id, String name) {
+            while (names.size() <= id) {
+                names.add(null);
+            }
+            names.set(id, name);
+            ids.put(name, id);
+        }
+
+        private synchronized String name(int id) {
+            return names.get(id);
+        }
+
+        private synchronized int size() {
+            return names.size();
+        }
+    }
+}
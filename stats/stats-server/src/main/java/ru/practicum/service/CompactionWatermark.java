@@ -0,0 +1,33 @@
+package ru.practicum.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.ConditionalOnJdbcStorage;
+import ru.practicum.repository.CompactionJdbcRepository;
+
+import java.time.LocalDateTime;
+
+@Component
+@ConditionalOnJdbcStorage
+@RequiredArgsConstructor
+public class CompactionWatermark {
+    private final CompactionJdbcRepository compactionJdbcRepository;
+    private volatile LocalDateTime compactedBefore;
+
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${stats.compaction.refresh-interval:1m}")
+    public void refresh() {
+        compactedBefore = compactionJdbcRepository.findCompactedBefore();
+    }
+
+    public LocalDateTime get() {
+        return compactedBefore;
+    }
+
+    public boolean covers(LocalDateTime start) {
+        LocalDateTime boundary = compactedBefore;
+        return boundary != null && start.isBefore(boundary);
+    }
+}
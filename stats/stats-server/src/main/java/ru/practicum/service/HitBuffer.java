@@ -0,0 +1,160 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.ConditionalOnJdbcStorage;
+import ru.practicum.config.StatsProperties;
+import ru.practicum.model.EndpointHit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Component
+@ConditionalOnJdbcStorage
+public class HitBuffer {
+    private final StatsProperties.Ingest properties;
+    private final HitWriter hitWriter;
+    private final BlockingQueue<EndpointHit> queue;
+    private final Counter droppedCounter;
+    private final Counter backpressureCounter;
+    private final Counter failedCounter;
+    private final Counter sampledOutCounter;
+    private final Timer flushTimer;
+    private volatile boolean running;
+    private Thread flusher;
+
+    public HitBuffer(StatsProperties properties, HitWriter hitWriter, MeterRegistry meterRegistry) {
+        this.properties = properties.getIngest();
+        this.hitWriter = hitWriter;
+        this.queue = new ArrayBlockingQueue<>(this.properties.getCapacity());
+        meterRegistry.gauge("stats.ingest.queue.depth", queue, BlockingQueue::size);
+        this.droppedCounter = meterRegistry.counter("stats.ingest.dropped");
+        this.backpressureCounter = meterRegistry.counter("stats.ingest.backpressure");
+        this.failedCounter = meterRegistry.counter("stats.ingest.flush.failed");
+        this.sampledOutCounter = meterRegistry.counter("stats.ingest.sampled.out");
+        meterRegistry.gauge("stats.ingest.sampling.weight", this, HitBuffer::samplingWeight);
+        this.flushTimer = meterRegistry.timer("stats.ingest.flush");
+    }
+
+    public boolean isEnabled() {
+        return properties.isAsync();
+    }
+
+    public void offer(EndpointHit hit) {
+        int weight = samplingWeight();
+        if (weight > 1) {
+            if (ThreadLocalRandom.current().nextInt(weight) != 0) {
+                sampledOutCounter.increment();
+                return;
+            }
+            hit.setWeight(weight);
+        }
+        if (queue.offer(hit)) {
+            return;
+        }
+        if (properties.getOverflow() == StatsProperties.OverflowPolicy.DROP) {
+            droppedCounter.increment();
+            return;
+        }
+        backpressureCounter.increment();
+        hitWriter.write(List.of(hit));
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * 1 - пишутся все хиты, иначе степень двойки до maxWeight, растущая с заполнением очереди.
+     */
+    int samplingWeight() {
+        StatsProperties.Sampling sampling = properties.getSampling();
+        double fill = (double) queue.size() / properties.getCapacity();
+        if (!sampling.isEnabled() || fill < sampling.getThreshold()) {
+            return 1;
+        }
+        int maxLevel = 31 - Integer.numberOfLeadingZeros(Math.max(2, sampling.getMaxWeight()));
+        double pressure = (fill - sampling.getThreshold()) / Math.max(1e-9, 1 - sampling.getThreshold());
+        int level = Math.min(maxLevel, 1 + (int) (pressure * maxLevel));
+        return 1 << level;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::flushLoop, "hit-buffer-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        running = false;
+        flusher.join(properties.getFlushInterval().toMillis() * 10);
+    }
+
+    private void flushLoop() {
+        int batchSize = properties.getBatchSize();
+        long intervalNanos = properties.getFlushInterval().toNanos();
+        List<EndpointHit> batch = new ArrayList<>(batchSize);
+        try {
+            while (running || !queue.isEmpty()) {
+                EndpointHit first = queue.poll(intervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + intervalNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() == batchSize || remaining <= 0 || !running) {
+                        break;
+                    }
+                    EndpointHit next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queue.drainTo(batch);
+            flush(batch);
+        }
+    }
+
+    private void flush(List<EndpointHit> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long startedAt = System.nanoTime();
+        try {
+            hitWriter.write(batch);
+        } catch (RuntimeException e) {
+            failedCounter.increment(batch.size());
+            log.error("Не удалось записать пачку из {} хитов", batch.size(), e);
+        } finally {
+            flushTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+}
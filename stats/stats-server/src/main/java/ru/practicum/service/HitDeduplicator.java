@@ -0,0 +1,83 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.StatsProperties;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.sketch.HyperLogLog;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Повторы отсекаются на расстоянии от одного до двух окон. Ключи запоминаются при проверке, чтобы отсечь
+ * и параллельные повторы; если запись не удалась, они снимаются через {@link #release}.
+ */
+@Component
+public class HitDeduplicator {
+    private final StatsProperties.Dedup properties;
+    private final long windowMillis;
+    private final NavigableMap<Long, Set<Long>> buckets = new ConcurrentSkipListMap<>();
+    private final Counter rawCounter;
+    private final Counter duplicateCounter;
+
+    public HitDeduplicator(StatsProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties.getDedup();
+        this.windowMillis = this.properties.getWindow().toMillis();
+        this.rawCounter = meterRegistry.counter("stats.ingest.hits.raw");
+        this.duplicateCounter = meterRegistry.counter("stats.ingest.hits.deduplicated");
+    }
+
+    public List<EndpointHit> filter(List<EndpointHit> hits) {
+        rawCounter.increment(hits.size());
+        if (!properties.isEnabled()) {
+            return hits;
+        }
+        long current = bucket(LocalDateTime.now());
+        buckets.headMap(current - 2).clear();
+        List<EndpointHit> unique = new ArrayList<>(hits.size());
+        for (EndpointHit hit : hits) {
+            long bucket = bucket(hit.getTimestamp());
+            if (bucket < current - 2 || bucket > current + 1) {
+                unique.add(hit);
+                continue;
+            }
+            long key = key(hit);
+            Set<Long> previous = buckets.get(bucket - 1);
+            if (previous != null && previous.contains(key)
+                    || !buckets.computeIfAbsent(bucket, b -> ConcurrentHashMap.newKeySet()).add(key)) {
+                continue;
+            }
+            unique.add(hit);
+        }
+        duplicateCounter.increment(hits.size() - unique.size());
+        return unique;
+    }
+
+    public void release(List<EndpointHit> hits) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        for (EndpointHit hit : hits) {
+            Set<Long> keys = buckets.get(bucket(hit.getTimestamp()));
+            if (keys != null) {
+                keys.remove(key(hit));
+            }
+        }
+    }
+
+    private static long key(EndpointHit hit) {
+        return HyperLogLog.hash(hit.getApp() + '\n' + hit.getUri() + '\n' + hit.getIp());
+    }
+
+    private long bucket(LocalDateTime time) {
+        return Math.floorDiv(time.toInstant(ZoneOffset.UTC).toEpochMilli(), windowMillis);
+    }
+}
@@ -0,0 +1,165 @@
+package ru.practicum.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.mapper.HitMapper;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.ImportFormat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.Set;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HitImportParser {
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int LOGGED_REJECTS = 10;
+
+    private final ObjectMapper objectMapper;
+    private final HitMapper hitMapper;
+    private final Validator validator;
+
+    public long parse(InputStream input, ImportFormat format, Consumer<EndpointHit> consumer) throws IOException {
+        Rejects rejects = new Rejects();
+        if (format == ImportFormat.NDJSON) {
+            parseNdjson(input, consumer, rejects);
+        } else {
+            parseCsv(input, consumer, rejects);
+        }
+        return rejects.count;
+    }
+
+    private void parseNdjson(InputStream input, Consumer<EndpointHit> consumer, Rejects rejects) throws IOException {
+        ObjectReader reader = objectMapper.readerFor(EndpointHitDto.class);
+        BufferedReader lines = reader(input);
+        String row;
+        long line = 0;
+        while ((row = lines.readLine()) != null) {
+            line++;
+            if (row.isBlank()) {
+                continue;
+            }
+            EndpointHitDto dto;
+            try {
+                dto = reader.readValue(row);
+            } catch (JsonProcessingException e) {
+                rejects.add(line, e.getOriginalMessage());
+                continue;
+            }
+            accept(dto, line, consumer, rejects);
+        }
+    }
+
+    private void parseCsv(InputStream input, Consumer<EndpointHit> consumer, Rejects rejects) throws IOException {
+        BufferedReader lines = reader(input);
+        String row;
+        long line = 0;
+        while ((row = lines.readLine()) != null) {
+            line++;
+            if (row.isBlank() || line == 1 && row.toLowerCase().startsWith("app,")) {
+                continue;
+            }
+            List<String> fields = splitCsv(row);
+            if (fields == null || fields.size() != 4) {
+                rejects.add(line, "expected 4 fields: app,uri,ip,timestamp");
+                continue;
+            }
+            EndpointHitDto dto = new EndpointHitDto();
+            dto.setApp(fields.get(0));
+            dto.setUri(fields.get(1));
+            dto.setIp(fields.get(2));
+            try {
+                dto.setTimestamp(fields.get(3).isEmpty() ? null : LocalDateTime.parse(fields.get(3), TIMESTAMP_FORMAT));
+            } catch (DateTimeParseException e) {
+                rejects.add(line, e.getMessage());
+                continue;
+            }
+            accept(dto, line, consumer, rejects);
+        }
+    }
+
+    private void accept(EndpointHitDto dto, long line, Consumer<EndpointHit> consumer, Rejects rejects) {
+        String error = validate(dto);
+        if (error != null) {
+            rejects.add(line, error);
+            return;
+        }
+        consumer.accept(hitMapper.toHit(dto));
+    }
+
+    /**
+     * null - хит корректен, иначе описание первого нарушения.
+     */
+    public String validate(EndpointHitDto dto) {
+        Set<ConstraintViolation<EndpointHitDto>> violations = validator.validate(dto);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        ConstraintViolation<EndpointHitDto> violation = violations.iterator().next();
+        return violation.getPropertyPath() + " " + violation.getMessage();
+    }
+
+    private static BufferedReader reader(InputStream input) {
+        return new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+    }
+
+    private static List<String> splitCsv(String row) {
+        List<String> fields = new ArrayList<>(4);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < row.length(); i++) {
+            char c = row.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < row.length() && row.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    private static class Rejects {
+        private long count;
+
+        private void add(long line, String reason) {
+            count++;
+            if (count <= LOGGED_REJECTS) {
+                log.warn("Строка {} файла загрузки отклонена: {}", line, reason);
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.config.ConditionalOnJdbcStorage;
+import ru.practicum.config.StatsProperties;
+import ru.practicum.dto.ImportResult;
+import ru.practicum.model.BucketKey;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.ImportFormat;
+import ru.practicum.repository.ImportJdbcRepository;
+import ru.practicum.repository.SketchJdbcRepository;
+import ru.practicum.sketch.HyperLogLog;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * При ошибке уже зафиксированные порции остаются загруженными.
+ */
+@Slf4j
+@Component
+@ConditionalOnJdbcStorage
+public class HitImporter {
+    private static final int SKETCH_BATCH_SIZE = 1000;
+    private static final int CHUNK_SIZE = 50_000;
+
+    private final ImportJdbcRepository importJdbcRepository;
+    private final SketchJdbcRepository sketchJdbcRepository;
+    private final HitImportParser hitImportParser;
+    private final HotWindowCounters hotWindowCounters;
+    private final TopHitsTracker topHitsTracker;
+    private final RangeIndex rangeIndex;
+    private final StatsResultCache statsResultCache;
+    private final UriIndex uriIndex;
+    private final StatsProperties properties;
+    private final Counter importedCounter;
+    private final Counter rejectedCounter;
+    private final TransactionTemplate transactionTemplate;
+
+    public HitImporter(ImportJdbcRepository importJdbcRepository,
+                       SketchJdbcRepository sketchJdbcRepository,
+                       HitImportParser hitImportParser,
+                       HotWindowCounters hotWindowCounters,
+                       TopHitsTracker topHitsTracker,
+                       RangeIndex rangeIndex,
+                       StatsResultCache statsResultCache,
+                       UriIndex uriIndex,
+                       StatsProperties properties,
+                       MeterRegistry meterRegistry,
+                       PlatformTransactionManager transactionManager) {
+        this.importJdbcRepository = importJdbcRepository;
+        this.sketchJdbcRepository = sketchJdbcRepository;
+        this.hitImportParser = hitImportParser;
+        this.hotWindowCounters = hotWindowCounters;
+        this.topHitsTracker = topHitsTracker;
+        this.rangeIndex = rangeIndex;
+        this.statsResultCache = statsResultCache;
+        this.uriIndex = uriIndex;
+        this.properties = properties;
+        this.importedCounter = meterRegistry.counter("stats.import.rows");
+        this.rejectedCounter = meterRegistry.counter("stats.import.rejected");
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public ImportResult importHits(InputStream input, ImportFormat format) {
+        long started = System.nanoTime();
+        LocalDateTime recentSince = recentSince();
+        List<EndpointHit> chunk = new ArrayList<>(CHUNK_SIZE);
+        long[] committed = new long[1];
+        long rejected;
+        try {
+            rejected = hitImportParser.parse(input, format, hit -> {
+                chunk.add(hit);
+                if (chunk.size() == CHUNK_SIZE) {
+                    committed[0] += importChunk(chunk, recentSince);
+                    chunk.clear();
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (!chunk.isEmpty()) {
+            committed[0] += importChunk(chunk, recentSince);
+        }
+        long imported = committed[0];
+
+        long millis = Math.max(1, Duration.ofNanos(System.nanoTime() - started).toMillis());
+        long rowsPerSecond = imported * 1000 / millis;
+        importedCounter.increment(imported);
+        rejectedCounter.increment(rejected);
+        log.info("Загружено {} хитов, отклонено {} строк за {} мс ({} строк/с)", imported, rejected, millis,
+                rowsPerSecond);
+        return new ImportResult(imported, rejected, millis, rowsPerSecond);
+    }
+
+    private long importChunk(List<EndpointHit> chunk, LocalDateTime recentSince) {
+        List<EndpointHit> recent = recentSince == null ? List.of() : chunk.stream()
+                .filter(hit -> !hit.getTimestamp().isBefore(recentSince))
+                .toList();
+        Long copied = transactionTemplate.execute(status -> {
+            importJdbcRepository.createStaging();
+            long rows = importJdbcRepository.copyToStaging(consumer -> chunk.forEach(consumer));
+            importJdbcRepository.moveToRaw(properties.getStorage().getEncoding());
+            importJdbcRepository.incrementRollups();
+            if (properties.getSketch().isEnabled()) {
+                mergeSketches();
+            }
+            importJdbcRepository.forEachUri(uriIndex::add);
+
+            HitWriter.afterCommit(() -> {
+                hotWindowCounters.record(recent);
+                topHitsTracker.record(recent);
+                rangeIndex.record(recent);
+                statsResultCache.invalidateAll();
+            });
+            return rows;
+        });
+        return copied == null ? 0 : copied;
+    }
+
+    private void mergeSketches() {
+        SortedMap<BucketKey, HyperLogLog> batch = new TreeMap<>();
+        importJdbcRepository.forEachDistinctIp(hit -> {
+            BucketKey key = BucketKey.of(hit);
+            if (!batch.containsKey(key) && batch.size() == SKETCH_BATCH_SIZE) {
+                sketchJdbcRepository.merge(batch);
+                batch.clear();
+            }
+            batch.computeIfAbsent(key, k -> new HyperLogLog()).add(hit.getIp());
+        });
+        sketchJdbcRepository.merge(batch);
+    }
+
+    private LocalDateTime recentSince() {
+        Duration horizon = Duration.ZERO;
+        if (properties.getHotWindow().isEnabled()) {
+            horizon = properties.getHotWindow().getSize();
+        }
+        if (properties.getTop().isSketchEnabled() && properties.getTop().getHorizon().compareTo(horizon) > 0) {
+            horizon = properties.getTop().getHorizon();
+        }
+        if (properties.getRangeIndex().isEnabled() && properties.getRangeIndex().getHorizon().compareTo(horizon) > 0) {
+            horizon = properties.getRangeIndex().getHorizon();
+        }
+        return horizon.isZero() ? null : LocalDateTime.now().minus(horizon);
+    }
+}
@@ -0,0 +1,121 @@
+package ru.practicum.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.config.ConditionalOnJdbcStorage;
+import ru.practicum.config.StatsProperties;
+import ru.practicum.model.BucketKey;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.repository.HitJdbcRepository;
+import ru.practicum.repository.RollupJdbcRepository;
+import ru.practicum.repository.SampledHourJdbcRepository;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+@Component
+@ConditionalOnJdbcStorage
+public class HitWriter {
+    private final HitJdbcRepository hitJdbcRepository;
+    private final RollupJdbcRepository rollupJdbcRepository;
+    private final SketchAccumulator sketchAccumulator;
+    private final SampledHourJdbcRepository sampledHourJdbcRepository;
+    private final SampledHours sampledHoursCache;
+    private final HotWindowCounters hotWindowCounters;
+    private final TopHitsTracker topHitsTracker;
+    private final RangeIndex rangeIndex;
+    private final StatsResultCache statsResultCache;
+    private final StatsDictionary statsDictionary;
+    private final UriIndex uriIndex;
+    private final StatsProperties.Encoding encoding;
+    private final TransactionTemplate transactionTemplate;
+
+    public HitWriter(HitJdbcRepository hitJdbcRepository,
+                     RollupJdbcRepository rollupJdbcRepository,
+                     SketchAccumulator sketchAccumulator,
+                     SampledHourJdbcRepository sampledHourJdbcRepository,
+                     SampledHours sampledHoursCache,
+                     HotWindowCounters hotWindowCounters,
+                     TopHitsTracker topHitsTracker,
+                     RangeIndex rangeIndex,
+                     StatsResultCache statsResultCache,
+                     StatsDictionary statsDictionary,
+                     UriIndex uriIndex,
+                     StatsProperties properties,
+                     PlatformTransactionManager transactionManager) {
+        this.hitJdbcRepository = hitJdbcRepository;
+        this.rollupJdbcRepository = rollupJdbcRepository;
+        this.sketchAccumulator = sketchAccumulator;
+        this.sampledHourJdbcRepository = sampledHourJdbcRepository;
+        this.sampledHoursCache = sampledHoursCache;
+        this.hotWindowCounters = hotWindowCounters;
+        this.topHitsTracker = topHitsTracker;
+        this.rangeIndex = rangeIndex;
+        this.statsResultCache = statsResultCache;
+        this.statsDictionary = statsDictionary;
+        this.uriIndex = uriIndex;
+        this.encoding = properties.getStorage().getEncoding();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Идентификаторы новых app и uri получаются до открытия транзакции, чтобы она не держала соединение, ожидая второе.
+     */
+    public void write(List<EndpointHit> hits) {
+        if (encoding == StatsProperties.Encoding.DICTIONARY) {
+            statsDictionary.resolve(hits);
+        }
+        transactionTemplate.executeWithoutResult(status -> writeInTransaction(hits));
+    }
+
+    private void writeInTransaction(List<EndpointHit> hits) {
+        if (encoding == StatsProperties.Encoding.DICTIONARY) {
+            hitJdbcRepository.saveAllEncoded(hits, statsDictionary::appId, statsDictionary::uriId);
+        } else {
+            hitJdbcRepository.saveAll(hits);
+        }
+
+        SortedMap<BucketKey, Long> hourly = new TreeMap<>();
+        SortedSet<LocalDateTime> sampledHours = new TreeSet<>();
+        for (EndpointHit hit : hits) {
+            BucketKey key = BucketKey.of(hit);
+            hourly.merge(key, (long) hit.getWeight(), Long::sum);
+            if (hit.getWeight() > 1) {
+                sampledHours.add(hit.getTimestamp().truncatedTo(ChronoUnit.HOURS));
+            }
+            uriIndex.add(hit.getUri());
+        }
+        rollupJdbcRepository.increment(hourly);
+        sampledHourJdbcRepository.markSampled(sampledHours);
+
+        afterCommit(() -> {
+            sampledHoursCache.add(sampledHours);
+            hotWindowCounters.record(hits);
+            topHitsTracker.record(hits);
+            rangeIndex.record(hits);
+            sketchAccumulator.record(hits);
+            statsResultCache.invalidate(hits);
+        });
+    }
+
+    static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,117 @@
+package ru.practicum.service;
+
+import org.springframework.stereotype.Component;
+import ru.practicum.config.StatsProperties;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.EndpointHit;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Учитываются только хиты этого экземпляра после его запуска.
+ */
+@Component
+public class HotWindowCounters {
+    private final StatsProperties.HotWindow properties;
+    private final int minutes;
+    private final AtomicReferenceArray<MinuteBucket> buckets;
+    private final long trackedSince;
+
+    public HotWindowCounters(StatsProperties properties) {
+        this.properties = properties.getHotWindow();
+        this.minutes = (int) this.properties.getSize().toMinutes();
+        this.buckets = new AtomicReferenceArray<>(minutes + 1);
+        this.trackedSince = epochMinute(LocalDateTime.now()) + 1;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public void record(List<EndpointHit> hits) {
+        if (!isEnabled()) {
+            return;
+        }
+        long oldest = epochMinute(LocalDateTime.now()) - minutes;
+        for (EndpointHit hit : hits) {
+            long minute = epochMinute(hit.getTimestamp());
+            MinuteBucket bucket = minute >= oldest ? bucket(minute) : null;
+            if (bucket != null) {
+                bucket.counters
+                        .computeIfAbsent(new AppUri(hit.getApp(), hit.getUri()), key -> new LongAdder())
+                        .add(hit.getWeight());
+            }
+        }
+    }
+
+    public LocalDateTime boundaryFor(LocalDateTime end) {
+        LocalDateTime now = LocalDateTime.now();
+        if (!isEnabled() || end.isBefore(now.minus(properties.getNowTolerance()))) {
+            return null;
+        }
+        long boundary = Math.max(epochMinute(now) - minutes + 1, trackedSince);
+        return boundary > epochMinute(now) ? null : LocalDateTime.ofEpochSecond(boundary * 60, 0, ZoneOffset.UTC);
+    }
+
+    public Collection<ViewStats> getStats(LocalDateTime from, List<String> uris) {
+        long fromMinute = epochMinute(from);
+        Set<String> uriFilter = uris == null || uris.isEmpty() ? null : Set.copyOf(uris);
+        Map<AppUri, ViewStats> result = new HashMap<>();
+        for (int i = 0; i < buckets.length(); i++) {
+            MinuteBucket bucket = buckets.get(i);
+            if (bucket == null || bucket.minute < fromMinute) {
+                continue;
+            }
+            bucket.counters.forEach((key, counter) -> {
+                if (uriFilter == null || uriFilter.contains(key.uri())) {
+                    result.merge(key, new ViewStats(key.app(), key.uri(), counter.sum()), (left, right) -> {
+                        left.setHits(left.getHits() + right.getHits());
+                        return left;
+                    });
+                }
+            });
+        }
+        return result.values();
+    }
+
+    private MinuteBucket bucket(long minute) {
+        int slot = (int) (minute % buckets.length());
+        while (true) {
+            MinuteBucket current = buckets.get(slot);
+            if (current != null && current.minute == minute) {
+                return current;
+            }
+            if (current != null && current.minute > minute) {
+                return null;
+            }
+            MinuteBucket fresh = new MinuteBucket(minute);
+            if (buckets.compareAndSet(slot, current, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    private static long epochMinute(LocalDateTime time) {
+        return time.truncatedTo(ChronoUnit.MINUTES).toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    private static final class MinuteBucket {
+        private final long minute;
+        private final Map<AppUri, LongAdder> counters = new ConcurrentHashMap<>();
+
+        private MinuteBucket(long minute) {
+            this.minute = minute;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package ru.practicum.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.ConditionalOnJdbcStorage;
+import ru.practicum.config.StatsProperties;
+import ru.practicum.repository.PartitionJdbcRepository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Хиты вне заранее созданных секций попадают в секцию по умолчанию и переносятся при создании секции.
+ */
+@Slf4j
+@Component
+@ConditionalOnJdbcStorage
+public class PartitionMaintenance {
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private final StatsProperties.Partition properties;
+    private final PartitionJdbcRepository partitionJdbcRepository;
+    private final String table;
+    private final Pattern namePattern;
+
+    public PartitionMaintenance(StatsProperties properties, PartitionJdbcRepository partitionJdbcRepository) {
+        this.properties = properties.getPartition();
+        this.partitionJdbcRepository = partitionJdbcRepository;
+        this.table = properties.getStorage().rawTable();
+        this.namePattern = Pattern.compile(table + "_p(\\d{8})_(\\d{8})");
+        if (this.properties.getInterval() != ChronoUnit.DAYS && this.properties.getInterval() != ChronoUnit.MONTHS) {
+            throw new IllegalStateException("Partition interval must be DAYS or MONTHS");
+        }
+    }
+
+    /**
+     * Ошибка перестройки старой таблицы останавливает старт: без секций не работают ни срок хранения, ни сжатие.
+     */
+    @PostConstruct
+    public void init() {
+        if (!partitionJdbcRepository.isPartitioned(table)) {
+            log.info("Таблица {} не секционирована, перестраивается в секционированную", table);
+            if (partitionJdbcRepository.migrateToPartitioned(table)) {
+                partitionJdbcRepository.applySchema();
+                log.info("Таблица {} секционирована, старые хиты перенесены в секцию по умолчанию", table);
+            }
+        }
+        maintain();
+    }
+
+    @Scheduled(cron = "${stats.partition.cron:0 0 3 * * *}")
+    public void maintain() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (!partitionJdbcRepository.isPartitioned(table)) {
+            log.warn("Таблица {} не секционирована, обслуживание секций пропущено", table);
+            return;
+        }
+        partitionJdbcRepository.createDefault(table);
+        createUpcoming();
+        applyRetention();
+    }
+
+    private void createUpcoming() {
+        LocalDate from = intervalStart(LocalDate.now());
+        for (int i = 0; i <= properties.getPremake(); i++) {
+            LocalDate to = from.plus(1, properties.getInterval());
+            String name = table + "_p" + from.format(NAME_FORMAT) + "_" + to.format(NAME_FORMAT);
+            try {
+                partitionJdbcRepository.create(table, name, from, to);
+            } catch (RuntimeException e) {
+                log.error("Не удалось создать секцию {}", name, e);
+            }
+            from = to;
+        }
+    }
+
+    private void applyRetention() {
+        if (properties.getRetention() == null) {
+            return;
+        }
+        LocalDate threshold = LocalDateTime.now().minus(properties.getRetention()).toLocalDate();
+        int expired = partitionJdbcRepository.deleteDefaultBefore(table, threshold);
+        if (expired > 0) {
+            log.info("Из секции по умолчанию удалено {} хитов по сроку хранения", expired);
+        }
+        for (String partition : partitionJdbcRepository.findPartitions(table)) {
+            LocalDate to = upperBound(partition);
+            if (to == null || to.isAfter(threshold)) {
+                continue;
+            }
+            if (properties.getRetentionAction() == StatsProperties.RetentionAction.DETACH) {
+                partitionJdbcRepository.detach(table, partition);
+                log.info("Секция {} отсоединена для архивации", partition);
+            } else {
+                partitionJdbcRepository.drop(partition);
+                log.info("Секция {} удалена по сроку хранения", partition);
+            }
+        }
+    }
+
+    public int dropBefore(LocalDateTime before) {
+        if (!partitionJdbcRepository.isPartitioned(table)) {
+            return 0;
+        }
+        int dropped = 0;
+        for (String partition : partitionJdbcRepository.findPartitions(table)) {
+            LocalDate to = upperBound(partition);
+            if (to != null && !to.atStartOfDay().isAfter(before)) {
+                partitionJdbcRepository.drop(partition);
+                log.info("Секция {} удалена: все ее хиты сжаты", partition);
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    private LocalDate upperBound(String partition) {
+        Matcher matcher = namePattern.matcher(partition);
+        return matcher.matches() ? LocalDate.parse(matcher.group(2), NAME_FORMAT) : null;
+    }
+
+    private LocalDate intervalStart(LocalDate date) {
+        return properties.getInterval() == ChronoUnit.MONTHS ? date.withDayOfMonth(1) : date;
+    }
+}
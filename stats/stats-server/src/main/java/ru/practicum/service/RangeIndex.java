@@ -0,0 +1,234 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.config.ConditionalOnJdbcStorage;
+import ru.practicum.config.StatsProperties;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.repository.HitJdbcRepository;
+import ru.practicum.sketch.MinuteCounter;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Поминутные счетчики хитов по (app, uri) за горизонт (см. {@link MinuteCounter}).
+ * Хитов других экземпляров индекс не видит, поэтому при других живых экземплярах он не используется.
+ */
+@Slf4j
+@Component
+@ConditionalOnJdbcStorage
+public class RangeIndex {
+    private static final int MINUTES_PER_HOUR = 60;
+
+    private final StatsProperties.RangeIndex properties;
+    private final HitJdbcRepository hitJdbcRepository;
+    private final CompactionWatermark compactionWatermark;
+    private final StatsInstances statsInstances;
+    private final TransactionTemplate readTransaction;
+    private final int horizonMinutes;
+    private final int size;
+    private final Map<String, Map<String, MinuteCounter>> countersByUri = new ConcurrentHashMap<>();
+    private final AtomicInteger trackedKeys = new AtomicInteger();
+    private volatile long loadedSince = Long.MAX_VALUE;
+    private volatile long lastRejectedMinute = Long.MIN_VALUE;
+    private volatile boolean shared;
+
+    public RangeIndex(StatsProperties properties,
+                      HitJdbcRepository hitJdbcRepository,
+                      CompactionWatermark compactionWatermark,
+                      StatsInstances statsInstances,
+                      PlatformTransactionManager transactionManager,
+                      MeterRegistry meterRegistry) {
+        this.properties = properties.getRangeIndex();
+        this.hitJdbcRepository = hitJdbcRepository;
+        this.compactionWatermark = compactionWatermark;
+        this.statsInstances = statsInstances;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        // курсор с fetchSize работает только внутри транзакции, иначе драйвер читает весь результат в память
+        this.readTransaction.setReadOnly(true);
+        this.horizonMinutes = (int) this.properties.getHorizon().toMinutes();
+        this.size = horizonMinutes + Math.max(MINUTES_PER_HOUR, horizonMinutes / 4);
+        meterRegistry.gauge("stats.range.index.keys", trackedKeys);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled() && !shared;
+    }
+
+    /**
+     * Заполнение выполняется до старта веб-сервера, пока новые хиты не начали поступать.
+     */
+    @PostConstruct
+    public void load() {
+        if (!isEnabled()) {
+            return;
+        }
+        if (!statsInstances.isAlone()) {
+            disable();
+            return;
+        }
+        long from = oldestMinute();
+        LocalDateTime compactedBefore = compactionWatermark.get();
+        if (compactedBefore != null) {
+            from = Math.max(from, epochMinute(compactedBefore));
+        }
+        long[] rows = new long[1];
+        long since = from;
+        readTransaction.executeWithoutResult(status -> hitJdbcRepository.forEachMinuteCount(time(since), bucket -> {
+            add(bucket.getApp(), bucket.getUri(), epochMinute(bucket.getBucket()), bucket.getHits());
+            rows[0]++;
+        }));
+        loadedSince = from;
+        log.info("Индекс хитов по минутам заполнен с {}: {} строк", time(from), rows[0]);
+    }
+
+    @Scheduled(fixedDelayString = "${stats.instance.heartbeat-interval:10s}")
+    public void checkInstances() {
+        if (isEnabled() && !statsInstances.isAlone()) {
+            disable();
+        }
+    }
+
+    public void record(List<EndpointHit> hits) {
+        if (!isEnabled()) {
+            return;
+        }
+        long latest = epochMinute(LocalDateTime.now()) + 1;
+        for (EndpointHit hit : hits) {
+            long minute = epochMinute(hit.getTimestamp());
+            if (minute <= latest) {
+                add(hit.getApp(), hit.getUri(), minute, hit.getWeight());
+            }
+        }
+    }
+
+    /**
+     * Если хиты нового ключа не попали в индекс из-за max-keys, индекс полон только после них.
+     */
+    public LocalDateTime coveredSince() {
+        if (!isEnabled() || loadedSince == Long.MAX_VALUE) {
+            return null;
+        }
+        long since = Math.max(loadedSince, oldestMinute());
+        long rejected = lastRejectedMinute;
+        if (rejected != Long.MIN_VALUE) {
+            since = Math.max(since, floorHour(rejected) + MINUTES_PER_HOUR);
+        }
+        return time(since);
+    }
+
+    public boolean isNow(LocalDateTime end) {
+        return !end.isBefore(LocalDateTime.now().minus(properties.getNowTolerance()));
+    }
+
+    /**
+     * Обе границы - начала минут не раньше {@link #coveredSince()}.
+     */
+    public Collection<ViewStats> getStats(LocalDateTime from, LocalDateTime to, List<String> uris) {
+        long fromMinute = epochMinute(from);
+        long toMinute = epochMinute(to);
+        List<ViewStats> result = new ArrayList<>();
+        if (uris == null || uris.isEmpty()) {
+            countersByUri.forEach((uri, counters) -> addStats(result, uri, counters, fromMinute, toMinute));
+        } else {
+            for (String uri : uris) {
+                Map<String, MinuteCounter> counters = countersByUri.get(uri);
+                if (counters != null) {
+                    addStats(result, uri, counters, fromMinute, toMinute);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${stats.range-index.eviction-interval:10m}")
+    public void evict() {
+        long oldest = oldestMinute();
+        for (String uri : countersByUri.keySet()) {
+            countersByUri.computeIfPresent(uri, (u, counters) -> {
+                counters.values().removeIf(counter -> {
+                    if (counter.evictIfIdle(oldest)) {
+                        trackedKeys.decrementAndGet();
+                        return true;
+                    }
+                    return false;
+                });
+                return counters.isEmpty() ? null : counters;
+            });
+        }
+    }
+
+    private void disable() {
+        shared = true;
+        countersByUri.clear();
+        trackedKeys.set(0);
+        log.error("Индекс хитов по минутам отключен до перезапуска: работают другие экземпляры stats-server");
+    }
+
+    private void addStats(List<ViewStats> result,
+                          String uri,
+                          Map<String, MinuteCounter> counters,
+                          long fromMinute,
+                          long toMinute) {
+        counters.forEach((app, counter) -> {
+            long hits = counter.sum(fromMinute, toMinute);
+            if (hits > 0) {
+                result.add(new ViewStats(app, uri, hits));
+            }
+        });
+    }
+
+    private void add(String app, String uri, long minute, long hits) {
+        Map<String, MinuteCounter> counters = countersByUri.get(uri);
+        MinuteCounter counter = counters == null ? null : counters.get(app);
+        if (counter != null && counter.add(minute, hits)) {
+            return;
+        }
+        // счетчика нет или он только что вытеснен: создаем новый под блокировкой uri, чтобы не разойтись с evict()
+        countersByUri.compute(uri, (u, current) -> {
+            Map<String, MinuteCounter> byApp = current == null ? new ConcurrentHashMap<>() : current;
+            MinuteCounter existing = byApp.get(app);
+            if (existing != null && existing.add(minute, hits)) {
+                return byApp;
+            }
+            if (trackedKeys.get() >= properties.getMaxKeys()) {
+                lastRejectedMinute = Math.max(lastRejectedMinute, minute);
+                return byApp.isEmpty() ? null : byApp;
+            }
+            MinuteCounter created = new MinuteCounter(horizonMinutes, size);
+            created.add(minute, hits);
+            byApp.put(app, created);
+            trackedKeys.incrementAndGet();
+            return byApp;
+        });
+    }
+
+    private long oldestMinute() {
+        return floorHour(epochMinute(LocalDateTime.now()) - horizonMinutes);
+    }
+
+    private static long floorHour(long minute) {
+        return Math.floorDiv(minute, MINUTES_PER_HOUR) * MINUTES_PER_HOUR;
+    }
+
+    private static long epochMinute(LocalDateTime time) {
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    private static LocalDateTime time(long epochMinute) {
+        return LocalDateTime.ofEpochSecond(epochMinute * 60, 0, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,73 @@
+package ru.practicum.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.ConditionalOnJdbcStorage;
+import ru.practicum.config.StatsProperties;
+import ru.practicum.model.HourAlignment;
+import ru.practicum.repository.CompactionJdbcRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Скетчи часов под новой границей пересчитываются перед ее сдвигом, иначе несброшенные изменения
+ * пропали бы вместе с сырыми хитами. Удаляются только хиты раньше границы, опубликованной предыдущим запуском:
+ * к этому моменту все экземпляры успели ее перечитать.
+ */
+@Slf4j
+@Component
+@ConditionalOnJdbcStorage
+public class RawHitCompaction {
+    private final StatsProperties.Compaction properties;
+    private final CompactionJdbcRepository compactionJdbcRepository;
+    private final CompactionWatermark compactionWatermark;
+    private final PartitionMaintenance partitionMaintenance;
+    private final SketchBackfill sketchBackfill;
+    private final List<String> tables;
+
+    public RawHitCompaction(StatsProperties properties,
+                            CompactionJdbcRepository compactionJdbcRepository,
+                            CompactionWatermark compactionWatermark,
+                            PartitionMaintenance partitionMaintenance,
+                            SketchBackfill sketchBackfill) {
+        if (properties.getCompaction().isEnabled() && !properties.getSketch().isEnabled()) {
+            throw new IllegalStateException("stats.compaction.enabled requires stats.sketch.enabled");
+        }
+        this.properties = properties.getCompaction();
+        this.compactionJdbcRepository = compactionJdbcRepository;
+        this.compactionWatermark = compactionWatermark;
+        this.partitionMaintenance = partitionMaintenance;
+        this.sketchBackfill = sketchBackfill;
+        this.tables = properties.getStorage().rawTables();
+    }
+
+    @Scheduled(cron = "${stats.compaction.cron:0 30 3 * * *}")
+    public void compact() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        LocalDateTime published = compactionJdbcRepository.findCompactedBefore();
+        if (published != null) {
+            partitionMaintenance.dropBefore(published);
+            long deleted = 0;
+            for (String table : tables) {
+                int batch;
+                do {
+                    batch = compactionJdbcRepository.deleteBefore(table, published, properties.getBatchSize());
+                    deleted += batch;
+                } while (batch == properties.getBatchSize());
+            }
+            log.info("Удалено {} сжатых сырых хитов раньше {}", deleted, published);
+        }
+
+        LocalDateTime boundary = HourAlignment.floor(LocalDateTime.now().minus(properties.getAfter()));
+        if (published == null || published.isBefore(boundary)) {
+            sketchBackfill.fill(published, boundary);
+        }
+        compactionJdbcRepository.advance(boundary);
+        compactionWatermark.refresh();
+        log.info("Граница сжатия сырых хитов: {}", compactionWatermark.get());
+    }
+}
@@ -0,0 +1,43 @@
+package ru.practicum.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.ConditionalOnJdbcStorage;
+import ru.practicum.repository.SampledHourJdbcRepository;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Часы из таблицы не удаляются, поэтому набор только растет.
+ */
+@Component
+@ConditionalOnJdbcStorage
+@RequiredArgsConstructor
+public class SampledHours {
+    private final SampledHourJdbcRepository sampledHourJdbcRepository;
+    private final NavigableSet<LocalDateTime> hours = new ConcurrentSkipListSet<>();
+
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${stats.ingest.sampling.refresh-interval:1m}")
+    public void refresh() {
+        hours.addAll(sampledHourJdbcRepository.findAll());
+    }
+
+    public void add(Collection<LocalDateTime> sampled) {
+        hours.addAll(sampled);
+    }
+
+    public boolean anySampled(LocalDateTime from, LocalDateTime to) {
+        if (hours.isEmpty()) {
+            return false;
+        }
+        LocalDateTime first = hours.ceiling(from.truncatedTo(ChronoUnit.HOURS));
+        return first != null && !first.isAfter(to);
+    }
+}
@@ -0,0 +1,326 @@
+package ru.practicum.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.practicum.config.ConditionalOnSegmentStorage;
+import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.ImportResult;
+import ru.practicum.dto.StatsQuery;
+import ru.practicum.dto.UriWindow;
+import ru.practicum.dto.UriWindowStats;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.dto.ViewStatsBucket;
+import ru.practicum.exception.ValidationException;
+import ru.practicum.mapper.HitMapper;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.model.ImportFormat;
+import ru.practicum.segment.SegmentStore;
+import ru.practicum.sketch.HyperLogLog;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Уникальность считается по 64-битному хешу ip.
+ */
+@Service
+@ConditionalOnSegmentStorage
+@RequiredArgsConstructor
+public class SegmentStatService implements StatService {
+    private final SegmentStore segmentStore;
+    private final HitMapper hitMapper;
+    private final UriIndex uriIndex;
+    private final HitImportParser hitImportParser;
+    private final HitDeduplicator hitDeduplicator;
+    private final StatsBatchExecutor statsBatchExecutor;
+
+    @PostConstruct
+    public void loadUriIndex() {
+        segmentStore.uris().forEach(uriIndex::add);
+    }
+
+    @Override
+    public void saveHit(EndpointHitDto hitDto) {
+        appendAll(hitDeduplicator.filter(List.of(hitMapper.toHit(hitDto))));
+    }
+
+    @Override
+    public void saveHits(List<EndpointHitDto> hitDtos) {
+        appendAll(hitDeduplicator.filter(hitMapper.toHits(hitDtos)));
+    }
+
+    @Override
+    public ImportResult importHits(InputStream input, ImportFormat format) {
+        long started = System.nanoTime();
+        long[] imported = new long[1];
+        long rejected;
+        try {
+            rejected = hitImportParser.parse(input, format, hit -> {
+                append(hit);
+                imported[0]++;
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long millis = Math.max(1, Duration.ofNanos(System.nanoTime() - started).toMillis());
+        return new ImportResult(imported[0], rejected, millis, imported[0] * 1000 / millis);
+    }
+
+    @Override
+    public List<ViewStats> getStats(LocalDateTime start,
+                                    LocalDateTime end,
+                                    List<String> uris,
+                                    boolean unique,
+                                    boolean approximate) {
+        checkRange(start, end);
+        return aggregate(start, end, uris, unique, approximate).toList();
+    }
+
+    @Override
+    public List<List<ViewStats>> getStatsBatch(List<StatsQuery> queries) {
+        queries.forEach(query -> checkRange(query.getStart(), query.getEnd()));
+
+        return statsBatchExecutor.execute(queries, query -> getStats(query.getStart(), query.getEnd(),
+                query.getUris(), query.isUnique(), query.isApproximate()));
+    }
+
+    @Override
+    public void streamStats(LocalDateTime start,
+                            LocalDateTime end,
+                            List<String> uris,
+                            boolean unique,
+                            Consumer<ViewStats> consumer) {
+        checkRange(start, end);
+        aggregate(start, end, uris, unique, false).forEach(consumer);
+    }
+
+    @Override
+    public List<ViewStats> getTop(LocalDateTime start, LocalDateTime end, int k) {
+        if (k <= 0) {
+            throw new ValidationException(String.format("Parameter k must be positive, got %s", k));
+        }
+        checkRange(start, end);
+        return aggregate(start, end, null, false, false).limit(k).toList();
+    }
+
+    @Override
+    public List<ViewStatsBucket> getSeries(LocalDateTime start,
+                                           LocalDateTime end,
+                                           ChronoUnit interval,
+                                           List<String> uris,
+                                           boolean unique) {
+        checkRange(start, end);
+        StatServiceImpl.checkInterval(interval);
+
+        Set<Integer> uriIds = uriIds(uris);
+        if (uriIds != null && uriIds.isEmpty()) {
+            return List.of();
+        }
+        long step = interval.getDuration().toMillis();
+        Map<SeriesKey, Set<Long>> ips = new HashMap<>();
+        Map<SeriesKey, long[]> counters = new HashMap<>();
+        segmentStore.scan(epochMillis(start), epochMillis(end), (time, appId, uriId, ipHash) -> {
+            if (uriIds == null || uriIds.contains(uriId)) {
+                SeriesKey key = new SeriesKey(appId, uriId, Math.floorDiv(time, step) * step);
+                if (unique) {
+                    ips.computeIfAbsent(key, k -> new HashSet<>()).add(ipHash);
+                } else {
+                    counters.computeIfAbsent(key, k -> new long[1])[0]++;
+                }
+            }
+        });
+        Map<SeriesKey, Long> hits = new HashMap<>();
+        ips.forEach((key, set) -> hits.put(key, (long) set.size()));
+        counters.forEach((key, counter) -> hits.put(key, counter[0]));
+        return hits.entrySet().stream()
+                .map(entry -> new ViewStatsBucket(segmentStore.app(entry.getKey().appId()),
+                        segmentStore.uri(entry.getKey().uriId()),
+                        LocalDateTime.ofEpochSecond(Math.floorDiv(entry.getKey().bucket(), 1000L), 0, ZoneOffset.UTC),
+                        entry.getValue()))
+                .sorted(Comparator.comparing(ViewStatsBucket::getApp)
+                        .thenComparing(ViewStatsBucket::getUri)
+                        .thenComparing(ViewStatsBucket::getBucket))
+                .toList();
+    }
+
+    @Override
+    public List<UriWindowStats> getWindowStats(List<UriWindow> windows, boolean unique) {
+        windows.forEach(window -> checkRange(window.getStart(), window.getEnd()));
+        if (windows.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Integer, List<Integer>> windowsByUri = new HashMap<>();
+        long from = Long.MAX_VALUE;
+        long to = Long.MIN_VALUE;
+        for (int i = 0; i < windows.size(); i++) {
+            UriWindow window = windows.get(i);
+            int uriId = segmentStore.uriId(window.getUri());
+            if (uriId >= 0) {
+                windowsByUri.computeIfAbsent(uriId, id -> new ArrayList<>()).add(i);
+                from = Math.min(from, epochMillis(window.getStart()));
+                to = Math.max(to, epochMillis(window.getEnd()));
+            }
+        }
+        long[] counters = new long[windows.size()];
+        List<Set<Long>> ips = new ArrayList<>();
+        for (int i = 0; i < windows.size(); i++) {
+            ips.add(new HashSet<>());
+        }
+        if (!windowsByUri.isEmpty()) {
+            segmentStore.scan(from, to, (time, appId, uriId, ipHash) -> {
+                List<Integer> indexes = windowsByUri.get(uriId);
+                if (indexes == null) {
+                    return;
+                }
+                for (int index : indexes) {
+                    UriWindow window = windows.get(index);
+                    if (time >= epochMillis(window.getStart()) && time <= epochMillis(window.getEnd())) {
+                        if (unique) {
+                            ips.get(index).add(ipHash);
+                        } else {
+                            counters[index]++;
+                        }
+                    }
+                }
+            });
+        }
+        List<UriWindowStats> result = new ArrayList<>(windows.size());
+        for (int i = 0; i < windows.size(); i++) {
+            UriWindow window = windows.get(i);
+            long hits = unique ? ips.get(i).size() : counters[i];
+            result.add(new UriWindowStats(window.getUri(), window.getStart(), window.getEnd(), hits));
+        }
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${stats.storage.segments.flush-interval:1s}")
+    public void force() {
+        segmentStore.force(epochMillis(LocalDateTime.now()));
+    }
+
+    private void appendAll(List<EndpointHit> hits) {
+        int appended = 0;
+        try {
+            for (EndpointHit hit : hits) {
+                append(hit);
+                appended++;
+            }
+        } catch (RuntimeException e) {
+            hitDeduplicator.release(hits.subList(appended, hits.size()));
+            throw e;
+        }
+    }
+
+    private void append(EndpointHit hit) {
+        uriIndex.add(hit.getUri());
+        segmentStore.append(epochMillis(hit.getTimestamp()), hit.getApp(), hit.getUri(), HyperLogLog.hash(hit.getIp()));
+    }
+
+    private Stream<ViewStats> aggregate(LocalDateTime start,
+                                        LocalDateTime end,
+                                        List<String> uris,
+                                        boolean unique,
+                                        boolean approximate) {
+        if (!unique) {
+            return aggregate(start, end, uris, key -> new long[1], (counter, ipHash) -> counter[0]++,
+                    counter -> counter[0]);
+        }
+        if (approximate) {
+            return aggregate(start, end, uris, key -> new HyperLogLog(), HyperLogLog::addHash,
+                    HyperLogLog::estimate);
+        }
+        return aggregate(start, end, uris, key -> new HashSet<Long>(), Set::add, Set::size);
+    }
+
+    /**
+     * Накопители групп освобождаются после сканирования, ViewStats создаются по одному в момент отдачи.
+     */
+    private <A> Stream<ViewStats> aggregate(LocalDateTime start,
+                                            LocalDateTime end,
+                                            List<String> uris,
+                                            LongFunction<A> factory,
+                                            Accumulator<A> accumulator,
+                                            ToLongFunction<A> result) {
+        Set<Integer> uriIds = uriIds(uris);
+        if (uriIds != null && uriIds.isEmpty()) {
+            return Stream.empty();
+        }
+        Map<Long, A> groups = new HashMap<>();
+        segmentStore.scan(epochMillis(start), epochMillis(end), (time, appId, uriId, ipHash) -> {
+            if (uriIds == null || uriIds.contains(uriId)) {
+                long key = (long) appId << 32 | (uriId & 0xFFFFFFFFL);
+                accumulator.add(groups.computeIfAbsent(key, factory::apply), ipHash);
+            }
+        });
+        long[] keys = new long[groups.size()];
+        long[] hits = new long[groups.size()];
+        int count = 0;
+        for (Iterator<Map.Entry<Long, A>> it = groups.entrySet().iterator(); it.hasNext(); count++) {
+            Map.Entry<Long, A> group = it.next();
+            keys[count] = group.getKey();
+            hits[count] = result.applyAsLong(group.getValue());
+            it.remove();
+        }
+        return IntStream.range(0, count).boxed()
+                .sorted(Comparator.comparingLong((Integer i) -> hits[i]).reversed())
+                .map(i -> new ViewStats(segmentStore.app((int) (keys[i] >>> 32)), segmentStore.uri((int) keys[i]),
+                        hits[i]));
+    }
+
+    /**
+     * null - фильтра нет.
+     */
+    private Set<Integer> uriIds(List<String> uris) {
+        List<String> resolved = uriIndex.resolve(uris);
+        if (resolved == null) {
+            return null;
+        }
+        Set<Integer> ids = new HashSet<>();
+        for (String uri : resolved) {
+            int id = segmentStore.uriId(uri);
+            if (id >= 0) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    private static long epochMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static void checkRange(LocalDateTime start, LocalDateTime end) {
+        if (end.isBefore(start)) {
+            throw new ValidationException(String.format("End date %s is before start date %s", end, start));
+        }
+    }
+
+    private record SeriesKey(int appId, int uriId, long bucket) {
+    }
+
+    @FunctionalInterface
+    private interface Accumulator<A> {
+        void add(A group, long ipHash);
+    }
+}
@@ -0,0 +1,96 @@
+package ru.practicum.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.config.ConditionalOnJdbcStorage;
+import ru.practicum.config.StatsProperties;
+import ru.practicum.model.BucketKey;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.repository.SketchJdbcRepository;
+import ru.practicum.sketch.HyperLogLog;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Запись хита не блокирует строку скетча горячего uri; несброшенные изменения теряются при сбое процесса.
+ */
+@Slf4j
+@Component
+@ConditionalOnJdbcStorage
+public class SketchAccumulator {
+    private final SketchJdbcRepository sketchJdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<BucketKey, HyperLogLog> pending = new ConcurrentHashMap<>();
+
+    public SketchAccumulator(SketchJdbcRepository sketchJdbcRepository,
+                             StatsProperties properties,
+                             PlatformTransactionManager transactionManager) {
+        this.sketchJdbcRepository = sketchJdbcRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = properties.getSketch().isEnabled();
+    }
+
+    public void record(List<EndpointHit> hits) {
+        if (!enabled) {
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            for (EndpointHit hit : hits) {
+                pending.compute(BucketKey.of(hit), (key, sketch) -> {
+                    HyperLogLog target = sketch == null ? new HyperLogLog() : sketch;
+                    target.add(hit.getIp());
+                    return target;
+                });
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${stats.sketch.flush-interval:1s}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        Map<BucketKey, HyperLogLog> drained;
+        lock.writeLock().lock();
+        try {
+            if (pending.isEmpty()) {
+                return;
+            }
+            drained = pending;
+            pending = new ConcurrentHashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        SortedMap<BucketKey, HyperLogLog> sorted = new TreeMap<>(drained);
+        try {
+            transactionTemplate.executeWithoutResult(status -> sketchJdbcRepository.merge(sorted));
+        } catch (RuntimeException e) {
+            log.warn("Не удалось сбросить {} скетчей уникальных ip, повтор при следующем сбросе", sorted.size(), e);
+            lock.readLock().lock();
+            try {
+                sorted.forEach((key, sketch) -> pending.merge(key, sketch, (current, failed) -> {
+                    current.merge(failed);
+                    return current;
+                }));
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+}
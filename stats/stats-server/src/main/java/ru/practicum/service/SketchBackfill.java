@@ -0,0 +1,103 @@
+package ru.practicum.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.config.ConditionalOnJdbcStorage;
+import ru.practicum.config.StatsProperties;
+import ru.practicum.model.BucketKey;
+import ru.practicum.model.HourAlignment;
+import ru.practicum.repository.HitJdbcRepository;
+import ru.practicum.repository.SketchJdbcRepository;
+import ru.practicum.sketch.HyperLogLog;
+
+import java.time.LocalDateTime;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Пока скетчи выключены, граница сбрасывается: хиты, записанные в промежутке, в скетчи не попали.
+ */
+@Slf4j
+@Component
+@ConditionalOnJdbcStorage
+public class SketchBackfill {
+    private static final int BATCH_SIZE = 1000;
+
+    private final HitJdbcRepository hitJdbcRepository;
+    private final SketchJdbcRepository sketchJdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+
+    public SketchBackfill(HitJdbcRepository hitJdbcRepository,
+                          SketchJdbcRepository sketchJdbcRepository,
+                          StatsProperties properties,
+                          PlatformTransactionManager transactionManager) {
+        this.hitJdbcRepository = hitJdbcRepository;
+        this.sketchJdbcRepository = sketchJdbcRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = properties.getSketch().isEnabled();
+    }
+
+    @PostConstruct
+    public void prepare() {
+        if (!enabled) {
+            sketchJdbcRepository.resetBackfill();
+            return;
+        }
+        LocalDateTime until = HourAlignment.ceil(LocalDateTime.now());
+        LocalDateTime[] range = hitJdbcRepository.getTimestampRange();
+        sketchJdbcRepository.startBackfill(range == null ? until : HourAlignment.floor(range[0]), until);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        LocalDateTime[] state = enabled ? sketchJdbcRepository.findBackfill() : null;
+        if (state == null || !state[0].isBefore(state[1])) {
+            return;
+        }
+        log.info("Заполнение скетчей уникальных ip с {} до {}", state[0], state[1]);
+        for (LocalDateTime hour = state[0]; hour.isBefore(state[1]); hour = hour.plusHours(1)) {
+            LocalDateTime from = hour;
+            transactionTemplate.executeWithoutResult(status -> {
+                fillHour(from);
+                sketchJdbcRepository.advanceBackfill(from.plusHours(1));
+            });
+        }
+        log.info("Скетчи уникальных ip заполнены до {}", state[1]);
+    }
+
+    /**
+     * Повторное добавление ip скетч не меняет, поэтому пересчет заполненных часов безопасен.
+     */
+    public void fill(LocalDateTime from, LocalDateTime to) {
+        if (from == null) {
+            LocalDateTime[] range = hitJdbcRepository.getTimestampRange();
+            if (range == null) {
+                return;
+            }
+            from = range[0];
+        }
+        for (LocalDateTime hour = HourAlignment.floor(from); hour.isBefore(to); hour = hour.plusHours(1)) {
+            LocalDateTime start = hour;
+            transactionTemplate.executeWithoutResult(status -> fillHour(start));
+        }
+    }
+
+    private void fillHour(LocalDateTime hour) {
+        SortedMap<BucketKey, HyperLogLog> batch = new TreeMap<>();
+        hitJdbcRepository.forEachDistinctIp(hour, hour.plusHours(1), hit -> {
+            BucketKey key = BucketKey.of(hit);
+            if (!batch.containsKey(key) && batch.size() == BATCH_SIZE) {
+                sketchJdbcRepository.merge(batch);
+                batch.clear();
+            }
+            batch.computeIfAbsent(key, k -> new HyperLogLog()).add(hit.getIp());
+        });
+        sketchJdbcRepository.merge(batch);
+    }
+}
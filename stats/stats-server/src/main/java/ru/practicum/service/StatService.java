@@ -1,18 +1,50 @@
 package ru.practicum.service;
 
 import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.ImportResult;
+import ru.practicum.dto.StatsQuery;
+import ru.practicum.dto.UriWindow;
+import ru.practicum.dto.UriWindowStats;
 import ru.practicum.dto.ViewStats;
+import ru.practicum.dto.ViewStatsBucket;
+import ru.practicum.model.ImportFormat;
 
+import java.io.InputStream;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface StatService {
 
     void saveHit(EndpointHitDto hitDto);
 
+    void saveHits(List<EndpointHitDto> hitDtos);
+
     List<ViewStats> getStats(LocalDateTime start,
                              LocalDateTime end,
                              List<String> uris,
-                             boolean unique);
+                             boolean unique,
+                             boolean approximate);
+
+    void streamStats(LocalDateTime start,
+                     LocalDateTime end,
+                     List<String> uris,
+                     boolean unique,
+                     Consumer<ViewStats> consumer);
+
+    List<ViewStats> getTop(LocalDateTime start, LocalDateTime end, int k);
+
+    ImportResult importHits(InputStream input, ImportFormat format);
+
+    List<ViewStatsBucket> getSeries(LocalDateTime start,
+                                    LocalDateTime end,
+                                    ChronoUnit interval,
+                                    List<String> uris,
+                                    boolean unique);
+
+    List<UriWindowStats> getWindowStats(List<UriWindow> windows, boolean unique);
+
+    List<List<ViewStats>> getStatsBatch(List<StatsQuery> queries);
 
 }
@@ -2,53 +2,231 @@ package ru.practicum.service;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.config.ConditionalOnJdbcStorage;
+import ru.practicum.config.StatsProperties;
 import ru.practicum.dto.EndpointHitDto;
+import ru.practicum.dto.ImportResult;
+import ru.practicum.dto.StatsQuery;
+import ru.practicum.dto.UriWindow;
+import ru.practicum.dto.UriWindowStats;
 import ru.practicum.dto.ViewStats;
+import ru.practicum.dto.ViewStatsBucket;
 import ru.practicum.exception.ValidationException;
 import ru.practicum.mapper.HitMapper;
 import ru.practicum.model.EndpointHit;
-import ru.practicum.repository.StatRepository;
+import ru.practicum.model.ImportFormat;
+import ru.practicum.repository.HitJdbcRepository;
 
+import java.io.InputStream;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Service
+@ConditionalOnJdbcStorage
 @RequiredArgsConstructor
 @Transactional(readOnly = true)
 public class StatServiceImpl implements StatService {
-    private final StatRepository statRepository;
+    private final HitWriter hitWriter;
+    private final HitBuffer hitBuffer;
+    private final HitImporter hitImporter;
+    private final HitDeduplicator hitDeduplicator;
     private final HitMapper hitMapper;
+    private final StatsQueryPlanner statsQueryPlanner;
+    private final HitJdbcRepository hitJdbcRepository;
+    private final SampledHours sampledHours;
+    private final TopHitsTracker topHitsTracker;
+    private final StatsResultCache statsResultCache;
+    private final UriIndex uriIndex;
+    private final CompactionWatermark compactionWatermark;
+    private final StatsBatchExecutor statsBatchExecutor;
+    private final StatsProperties properties;
+    private final PlatformTransactionManager transactionManager;
 
     @Override
-    @Transactional
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void saveHit(EndpointHitDto hitDto) {
-        EndpointHit hit = hitMapper.toHit(hitDto);
-        statRepository.save(hit);
+        List<EndpointHit> hits = hitDeduplicator.filter(List.of(hitMapper.toHit(hitDto)));
+        if (hits.isEmpty()) {
+            return;
+        }
+        try {
+            if (hitBuffer.isEnabled()) {
+                hitBuffer.offer(hits.get(0));
+            } else {
+                hitWriter.write(hits);
+            }
+        } catch (RuntimeException e) {
+            hitDeduplicator.release(hits);
+            throw e;
+        }
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void saveHits(List<EndpointHitDto> hitDtos) {
+        List<EndpointHit> hits = hitDeduplicator.filter(hitMapper.toHits(hitDtos));
+        if (hits.isEmpty()) {
+            return;
+        }
+        try {
+            hitWriter.write(hits);
+        } catch (RuntimeException e) {
+            hitDeduplicator.release(hits);
+            throw e;
+        }
     }
 
     @Override
-    public List<ViewStats> getStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
-        List<ViewStats> projections;
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ImportResult importHits(InputStream input, ImportFormat format) {
+        return hitImporter.importHits(input, format);
+    }
 
-        if (end.isBefore(start)) {
-            throw new ValidationException(String.format("End date %s is before start date %s", end, start));
+    @Override
+    public List<ViewStats> getStats(LocalDateTime start,
+                                    LocalDateTime end,
+                                    List<String> uris,
+                                    boolean unique,
+                                    boolean approximate) {
+        checkRange(start, end);
+
+        if (statsResultCache.isEnabled()) {
+            return statsResultCache.get(start, end, uris, unique, approximate,
+                    () -> queryStats(start, end, uris, unique, approximate));
         }
+        return queryStats(start, end, uris, unique, approximate);
+    }
 
-        if (uris != null && !uris.isEmpty()) {
-            if (unique) {
-                projections = statRepository.getUniqueStatsWithHitsAndUris(start, end, uris);
-            } else {
-                projections = statRepository.getStatsWithHitsAndUris(start, end, uris);
+    /**
+     * Вызов getStats изнутри сервиса идет мимо прокси, поэтому транзакция REPEATABLE READ открывается явно.
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<List<ViewStats>> getStatsBatch(List<StatsQuery> queries) {
+        queries.forEach(query -> checkRange(query.getStart(), query.getEnd()));
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        transaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        return statsBatchExecutor.execute(queries, query -> transaction.execute(status -> getStats(query.getStart(),
+                query.getEnd(), query.getUris(), query.isUnique(), query.isApproximate())));
+    }
+
+    @Override
+    public void streamStats(LocalDateTime start,
+                            LocalDateTime end,
+                            List<String> uris,
+                            boolean unique,
+                            Consumer<ViewStats> sink) {
+        checkRange(start, end);
+        List<String> resolved = uriIndex.resolve(uris);
+        if (resolved != null && resolved.isEmpty()) {
+            return;
+        }
+        Consumer<ViewStats> consumer = !sampledHours.anySampled(start, end) ? sink : viewStats -> {
+            viewStats.setEstimated(true);
+            sink.accept(viewStats);
+        };
+
+        if (unique && compactionWatermark.covers(start)) {
+            // точных уникальных просмотров за сжатые часы нет, а приближенный результат - по строке на uri
+            statsQueryPlanner.getStats(start, end, resolved, true, true).forEach(consumer);
+            return;
+        }
+        hitJdbcRepository.streamStats(start, end, resolved, unique, compactionWatermark.get(),
+                properties.getStream().getFetchSize(), consumer);
+    }
+
+    @Override
+    public List<ViewStats> getTop(LocalDateTime start, LocalDateTime end, int k) {
+        checkRange(start, end);
+        if (k <= 0) {
+            throw new ValidationException(String.format("Parameter k must be positive, got %s", k));
+        }
+
+        List<ViewStats> top = topHitsTracker.covers(start, end)
+                ? topHitsTracker.getTop(start, end, k)
+                : hitJdbcRepository.getTop(start, end, k, compactionWatermark.get());
+        return markEstimated(top, start, end);
+    }
+
+    @Override
+    public List<ViewStatsBucket> getSeries(LocalDateTime start,
+                                           LocalDateTime end,
+                                           ChronoUnit interval,
+                                           List<String> uris,
+                                           boolean unique) {
+        checkRange(start, end);
+        checkInterval(interval);
+        List<String> resolved = uriIndex.resolve(uris);
+        if (resolved != null && resolved.isEmpty()) {
+            return List.of();
+        }
+
+        List<ViewStatsBucket> series = statsQueryPlanner.getSeries(start, end, interval, resolved, unique);
+        for (ViewStatsBucket bucket : series) {
+            LocalDateTime bucketEnd = bucket.getBucket().plus(1, interval).minusNanos(1);
+            if (sampledHours.anySampled(bucket.getBucket(), bucketEnd)) {
+                bucket.setEstimated(true);
             }
-        } else {
-            if (unique) {
-                projections = statRepository.getUniqueStatsWithHits(start, end);
-            } else {
-                projections = statRepository.getStatsWithHits(start, end);
+        }
+        return series;
+    }
+
+    @Override
+    public List<UriWindowStats> getWindowStats(List<UriWindow> windows, boolean unique) {
+        windows.forEach(window -> checkRange(window.getStart(), window.getEnd()));
+        if (windows.isEmpty()) {
+            return List.of();
+        }
+
+        List<UriWindowStats> stats = statsQueryPlanner.getWindowStats(windows, unique);
+        for (UriWindowStats window : stats) {
+            if (sampledHours.anySampled(window.getStart(), window.getEnd())) {
+                window.setEstimated(true);
             }
         }
+        return stats;
+    }
+
+    /**
+     * Шаблоны uri раскрываются при каждом вычислении, поэтому результат по шаблону сбрасывается любым новым хитом.
+     */
+    private List<ViewStats> queryStats(LocalDateTime start,
+                                       LocalDateTime end,
+                                       List<String> uris,
+                                       boolean unique,
+                                       boolean approximate) {
+        List<String> resolved = uriIndex.resolve(uris);
+        if (resolved != null && resolved.isEmpty()) {
+            return List.of();
+        }
+        return markEstimated(statsQueryPlanner.getStats(start, end, resolved, unique, approximate), start, end);
+    }
+
+    private List<ViewStats> markEstimated(List<ViewStats> stats, LocalDateTime start, LocalDateTime end) {
+        if (!stats.isEmpty() && sampledHours.anySampled(start, end)) {
+            stats.forEach(viewStats -> viewStats.setEstimated(true));
+        }
+        return stats;
+    }
 
-        return projections;
+    static void checkInterval(ChronoUnit interval) {
+        if (interval != ChronoUnit.MINUTES && interval != ChronoUnit.HOURS && interval != ChronoUnit.DAYS) {
+            throw new ValidationException(String.format("Interval must be MINUTES, HOURS or DAYS, got %s", interval));
+        }
+    }
+
+    private static void checkRange(LocalDateTime start, LocalDateTime end) {
+        if (end.isBefore(start)) {
+            throw new ValidationException(String.format("End date %s is before start date %s", end, start));
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,78 @@
+package ru.practicum.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.StatsProperties;
+import ru.practicum.dto.StatsQuery;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.exception.ValidationException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Когда пул и его очередь заняты, запрос выполняется в потоке вызывающего, поэтому пачки не копятся в памяти.
+ */
+@Component
+public class StatsBatchExecutor {
+    private final StatsProperties.Batch properties;
+    private final ThreadPoolExecutor executor;
+
+    public StatsBatchExecutor(StatsProperties properties) {
+        this.properties = properties.getBatch();
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(this.properties.getParallelism(), this.properties.getParallelism(),
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(this.properties.getQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "stats-batch-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public List<List<ViewStats>> execute(List<StatsQuery> queries, Function<StatsQuery, List<ViewStats>> query) {
+        if (queries.size() > properties.getMaxQueries()) {
+            throw new ValidationException(String.format("Batch must contain at most %s queries, got %s",
+                    properties.getMaxQueries(), queries.size()));
+        }
+        Map<Key, CompletableFuture<List<ViewStats>>> futures = new LinkedHashMap<>();
+        List<CompletableFuture<List<ViewStats>>> ordered = new ArrayList<>(queries.size());
+        for (StatsQuery statsQuery : queries) {
+            ordered.add(futures.computeIfAbsent(Key.of(statsQuery),
+                    key -> CompletableFuture.supplyAsync(() -> query.apply(statsQuery), executor)));
+        }
+        try {
+            return ordered.stream().map(CompletableFuture::join).toList();
+        } catch (CompletionException e) {
+            futures.values().forEach(future -> future.cancel(false));
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private record Key(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique, boolean approximate) {
+        static Key of(StatsQuery query) {
+            List<String> uris = query.getUris() == null ? List.of() : query.getUris().stream().sorted().distinct().toList();
+            return new Key(query.getStart(), query.getEnd(), uris, query.isUnique(), query.isApproximate());
+        }
+    }
+}
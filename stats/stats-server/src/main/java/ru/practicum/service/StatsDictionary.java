@@ -0,0 +1,57 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.ConditionalOnJdbcStorage;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.repository.DictionaryJdbcRepository;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+@ConditionalOnJdbcStorage
+@RequiredArgsConstructor
+public class StatsDictionary {
+    private final DictionaryJdbcRepository dictionaryJdbcRepository;
+    private final Map<String, Integer> appIds = new ConcurrentHashMap<>();
+    private final Map<String, Integer> uriIds = new ConcurrentHashMap<>();
+
+    public void resolve(List<EndpointHit> hits) {
+        Set<String> apps = new HashSet<>();
+        Set<String> uris = new HashSet<>();
+        for (EndpointHit hit : hits) {
+            if (!appIds.containsKey(hit.getApp())) {
+                apps.add(hit.getApp());
+            }
+            if (!uriIds.containsKey(hit.getUri())) {
+                uris.add(hit.getUri());
+            }
+        }
+        if (!apps.isEmpty()) {
+            appIds.putAll(dictionaryJdbcRepository.getOrCreateAppIds(apps));
+        }
+        if (!uris.isEmpty()) {
+            uriIds.putAll(dictionaryJdbcRepository.getOrCreateUriIds(uris));
+        }
+    }
+
+    public int appId(String app) {
+        return id(appIds, app);
+    }
+
+    public int uriId(String uri) {
+        return id(uriIds, uri);
+    }
+
+    private static int id(Map<String, Integer> ids, String value) {
+        Integer id = ids.get(value);
+        if (id == null) {
+            throw new IllegalStateException("Dictionary id is not resolved: " + value);
+        }
+        return id;
+    }
+}
@@ -0,0 +1,47 @@
+package ru.practicum.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.ConditionalOnJdbcStorage;
+import ru.practicum.config.StatsProperties;
+import ru.practicum.repository.InstanceJdbcRepository;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Экземпляр, пропустивший три отметки подряд, считается остановленным.
+ */
+@Component
+@ConditionalOnJdbcStorage
+public class StatsInstances {
+    private static final int MISSED_HEARTBEATS = 3;
+
+    private final InstanceJdbcRepository instanceJdbcRepository;
+    private final Duration timeout;
+    private final String id = UUID.randomUUID().toString();
+    private volatile boolean alone;
+
+    public StatsInstances(InstanceJdbcRepository instanceJdbcRepository, StatsProperties properties) {
+        this.instanceJdbcRepository = instanceJdbcRepository;
+        this.timeout = properties.getInstance().getHeartbeatInterval().multipliedBy(MISSED_HEARTBEATS);
+    }
+
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${stats.instance.heartbeat-interval:10s}")
+    public void heartbeat() {
+        instanceJdbcRepository.heartbeat(id);
+        alone = instanceJdbcRepository.countOthers(id, timeout) == 0;
+    }
+
+    public boolean isAlone() {
+        return alone;
+    }
+
+    @PreDestroy
+    public void stop() {
+        instanceJdbcRepository.delete(id);
+    }
+}
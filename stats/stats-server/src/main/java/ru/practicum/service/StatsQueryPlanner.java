@@ -0,0 +1,214 @@
+package ru.practicum.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.ConditionalOnJdbcStorage;
+import ru.practicum.config.StatsProperties;
+import ru.practicum.dto.UriWindow;
+import ru.practicum.dto.UriWindowStats;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.dto.ViewStatsBucket;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.BucketKey;
+import ru.practicum.model.HourAlignment;
+import ru.practicum.repository.HitJdbcRepository;
+import ru.practicum.repository.RollupJdbcRepository;
+import ru.practicum.repository.SketchJdbcRepository;
+import ru.practicum.sketch.HyperLogLog;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Уникальные просмотры по агрегатам не складываются: точно они считаются по сырым хитам, приближенно - по скетчам.
+ * В сжатой области сырых хитов нет, поэтому края в ней округляются до часа, а уникальность всегда приближенная.
+ */
+@Component
+@ConditionalOnJdbcStorage
+@RequiredArgsConstructor
+public class StatsQueryPlanner {
+    private final HitJdbcRepository hitJdbcRepository;
+    private final RollupJdbcRepository rollupJdbcRepository;
+    private final SketchJdbcRepository sketchJdbcRepository;
+    private final HotWindowCounters hotWindowCounters;
+    private final CompactionWatermark compactionWatermark;
+    private final RangeIndex rangeIndex;
+    private final StatsProperties properties;
+
+    public List<ViewStats> getStats(LocalDateTime start,
+                                    LocalDateTime end,
+                                    List<String> uris,
+                                    boolean unique,
+                                    boolean approximate) {
+        LocalDateTime compactedBefore = compactionWatermark.get();
+        if (unique) {
+            LocalDateTime alignedStart = HourAlignment.start(start, compactedBefore);
+            LocalDateTime alignedEnd = HourAlignment.end(end, compactedBefore);
+            boolean compacted = compactedBefore != null && start.isBefore(compactedBefore);
+            boolean sketched = approximate && properties.getSketch().isEnabled();
+            if (!sketched && !compacted || !alignedStart.isBefore(alignedEnd)) {
+                return hitJdbcRepository.getStats(start, end, true, uris, true);
+            }
+            return getApproximateUniqueStats(start, end, alignedStart, alignedEnd, uris);
+        }
+
+        Map<AppUri, ViewStats> merged = new LinkedHashMap<>();
+        LocalDateTime indexedSince = rangeIndex.coveredSince();
+        if (indexedSince != null && !end.isBefore(indexedSince)) {
+            addIndexedHits(merged, start, end, uris, indexedSince, compactedBefore);
+            return sorted(merged.values());
+        }
+        LocalDateTime hotBoundary = hotWindowCounters.boundaryFor(end);
+        if (hotBoundary != null && start.isBefore(hotBoundary)) {
+            addHits(merged, start, hotBoundary, false, uris, compactedBefore);
+            merge(merged, hotWindowCounters.getStats(hotBoundary, uris));
+        } else {
+            addHits(merged, start, end, true, uris, compactedBefore);
+        }
+        return sorted(merged.values());
+    }
+
+    public List<ViewStatsBucket> getSeries(LocalDateTime start,
+                                           LocalDateTime end,
+                                           ChronoUnit interval,
+                                           List<String> uris,
+                                           boolean unique) {
+        LocalDateTime compactedBefore = compactionWatermark.get();
+        if (!unique || compactedBefore == null || !start.isBefore(compactedBefore)) {
+            return hitJdbcRepository.getSeries(start, end, interval, uris, unique, compactedBefore);
+        }
+        Map<BucketKey, HyperLogLog> sketches = new HashMap<>();
+        LocalDateTime sketchEnd = end.isBefore(compactedBefore) ? HourAlignment.ceil(end) : compactedBefore;
+        sketchJdbcRepository.mergeInto(sketches, HourAlignment.floor(start), sketchEnd, interval, uris);
+        if (!end.isBefore(compactedBefore)) {
+            hitJdbcRepository.addDistinctIps(sketches, compactedBefore, end, interval, uris);
+        }
+        return sketches.entrySet().stream()
+                .map(entry -> new ViewStatsBucket(entry.getKey().app(), entry.getKey().uri(), entry.getKey().bucket(),
+                        entry.getValue().estimate()))
+                .sorted(Comparator.comparing(ViewStatsBucket::getApp)
+                        .thenComparing(ViewStatsBucket::getUri)
+                        .thenComparing(ViewStatsBucket::getBucket))
+                .toList();
+    }
+
+    public List<UriWindowStats> getWindowStats(List<UriWindow> windows, boolean unique) {
+        LocalDateTime compactedBefore = compactionWatermark.get();
+        List<UriWindow> exact = windows;
+        if (unique && compactedBefore != null) {
+            exact = windows.stream().filter(window -> !window.getStart().isBefore(compactedBefore)).toList();
+        }
+        long[] exactHits = hitJdbcRepository.getWindowStats(exact, unique, compactedBefore);
+
+        List<UriWindowStats> result = new ArrayList<>(windows.size());
+        int next = 0;
+        for (UriWindow window : windows) {
+            long hits;
+            if (next < exact.size() && exact.get(next) == window) {
+                hits = exactHits[next++];
+            } else {
+                hits = getStats(window.getStart(), window.getEnd(), List.of(window.getUri()), true, true).stream()
+                        .mapToLong(ViewStats::getHits)
+                        .sum();
+            }
+            result.add(new UriWindowStats(window.getUri(), window.getStart(), window.getEnd(), hits));
+        }
+        return result;
+    }
+
+    /**
+     * Если end - это "сейчас", последняя минута тоже берется из индекса.
+     */
+    private void addIndexedHits(Map<AppUri, ViewStats> merged,
+                                LocalDateTime start,
+                                LocalDateTime end,
+                                List<String> uris,
+                                LocalDateTime indexedSince,
+                                LocalDateTime compactedBefore) {
+        boolean now = rangeIndex.isNow(end);
+        LocalDateTime from = start.isBefore(indexedSince) ? indexedSince : ceilToMinute(start);
+        LocalDateTime to = now ? end.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1) : end.truncatedTo(ChronoUnit.MINUTES);
+        if (to.isBefore(from)) {
+            merge(merged, hitJdbcRepository.getStats(start, end, true, uris, false));
+            return;
+        }
+        if (start.isBefore(indexedSince)) {
+            addHits(merged, start, indexedSince, false, uris, compactedBefore);
+        } else if (start.isBefore(from)) {
+            merge(merged, hitJdbcRepository.getStats(start, from, false, uris, false));
+        }
+        merge(merged, rangeIndex.getStats(from, to, uris));
+        if (!now) {
+            merge(merged, hitJdbcRepository.getStats(to, end, true, uris, false));
+        }
+    }
+
+    private void addHits(Map<AppUri, ViewStats> merged,
+                         LocalDateTime from,
+                         LocalDateTime to,
+                         boolean toInclusive,
+                         List<String> uris,
+                         LocalDateTime compactedBefore) {
+        LocalDateTime alignedStart = HourAlignment.start(from, compactedBefore);
+        LocalDateTime alignedEnd = HourAlignment.end(to, compactedBefore);
+        if (!alignedStart.isBefore(alignedEnd)) {
+            merge(merged, hitJdbcRepository.getStats(from, to, toInclusive, uris, false));
+            return;
+        }
+        merge(merged, rollupJdbcRepository.getStats(alignedStart, alignedEnd, uris));
+        if (from.isBefore(alignedStart)) {
+            merge(merged, hitJdbcRepository.getStats(from, alignedStart, false, uris, false));
+        }
+        if (!alignedEnd.isAfter(to) && (toInclusive || alignedEnd.isBefore(to))) {
+            merge(merged, hitJdbcRepository.getStats(alignedEnd, to, toInclusive, uris, false));
+        }
+    }
+
+    private List<ViewStats> getApproximateUniqueStats(LocalDateTime start,
+                                                      LocalDateTime end,
+                                                      LocalDateTime alignedStart,
+                                                      LocalDateTime alignedEnd,
+                                                      List<String> uris) {
+        Map<AppUri, HyperLogLog> sketches = new HashMap<>();
+        sketchJdbcRepository.mergeInto(sketches, alignedStart, alignedEnd, uris);
+        if (start.isBefore(alignedStart)) {
+            hitJdbcRepository.addDistinctIps(sketches, start, alignedStart, false, uris);
+        }
+        if (!alignedEnd.isAfter(end)) {
+            hitJdbcRepository.addDistinctIps(sketches, alignedEnd, end, true, uris);
+        }
+
+        return sorted(sketches.entrySet().stream()
+                .map(entry -> new ViewStats(entry.getKey().app(), entry.getKey().uri(), entry.getValue().estimate()))
+                .toList());
+    }
+
+    private static LocalDateTime ceilToMinute(LocalDateTime time) {
+        LocalDateTime floor = time.truncatedTo(ChronoUnit.MINUTES);
+        return floor.equals(time) ? floor : floor.plusMinutes(1);
+    }
+
+    private static List<ViewStats> sorted(Collection<ViewStats> stats) {
+        return stats.stream()
+                .sorted(Comparator.comparing(ViewStats::getHits).reversed())
+                .toList();
+    }
+
+    private static void merge(Map<AppUri, ViewStats> merged, Collection<ViewStats> part) {
+        for (ViewStats stats : part) {
+            merged.merge(new AppUri(stats.getApp(), stats.getUri()),
+                    new ViewStats(stats.getApp(), stats.getUri(), stats.getHits()),
+                    (left, right) -> {
+                        left.setHits(left.getHits() + right.getHits());
+                        return left;
+                    });
+        }
+    }
+}
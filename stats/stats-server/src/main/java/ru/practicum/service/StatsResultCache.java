@@ -0,0 +1,136 @@
+package ru.practicum.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.StatsProperties;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.index.UriTrie;
+import ru.practicum.model.EndpointHit;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Запись регистрируется в индексе до выполнения запроса, а сброс ключа дожидается окончания его вычисления,
+ * поэтому результат, посчитанный до фиксации новых хитов, в кеше не остается. Чужие хиты сбрасывает только TTL.
+ */
+@Component
+public class StatsResultCache {
+    private static final String ALL_URIS = "";
+
+    private final StatsProperties.Cache properties;
+    private final Cache<Key, Entry> cache;
+    private final Map<String, Map<Key, Entry>> keysByUri = new ConcurrentHashMap<>();
+
+    public StatsResultCache(StatsProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties.getCache();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(this.properties.getMaxSize())
+                .expireAfterWrite(this.properties.getTtl())
+                .<Key, Entry>removalListener((key, entry, cause) -> {
+                    if (key != null && entry != null) {
+                        unregister(key, entry);
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "stats.query");
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public List<ViewStats> get(LocalDateTime start,
+                               LocalDateTime end,
+                               List<String> uris,
+                               boolean unique,
+                               boolean approximate,
+                               Supplier<List<ViewStats>> loader) {
+        Key key = new Key(bucket(start), bucket(end), uris == null ? List.of() : uris.stream().sorted().distinct().toList(),
+                unique, approximate);
+        return cache.get(key, k -> {
+            Entry entry = new Entry();
+            register(k, entry);
+            entry.stats = loader.get();
+            return entry;
+        }).stats;
+    }
+
+    public void invalidate(List<EndpointHit> hits) {
+        if (!isEnabled()) {
+            return;
+        }
+        Set<String> uris = new HashSet<>();
+        for (EndpointHit hit : hits) {
+            uris.add(hit.getUri());
+        }
+        uris.add(ALL_URIS);
+        for (String uri : uris) {
+            Map<Key, Entry> keys = keysByUri.get(uri);
+            if (keys != null && !keys.isEmpty()) {
+                cache.invalidateAll(Set.copyOf(keys.keySet()));
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        if (isEnabled()) {
+            cache.invalidateAll();
+        }
+    }
+
+    private void register(Key key, Entry entry) {
+        for (String uri : indexUris(key)) {
+            keysByUri.compute(uri, (u, keys) -> {
+                Map<Key, Entry> registered = keys == null ? new ConcurrentHashMap<>() : keys;
+                registered.put(key, entry);
+                return registered;
+            });
+        }
+    }
+
+    /**
+     * Слушатель удаления асинхронный: к его запуску ключ может быть уже зарегистрирован заново.
+     */
+    private void unregister(Key key, Entry entry) {
+        for (String uri : indexUris(key)) {
+            keysByUri.computeIfPresent(uri, (u, keys) -> {
+                keys.remove(key, entry);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    private static List<String> indexUris(Key key) {
+        if (key.uris().isEmpty() || key.uris().stream().anyMatch(UriTrie::isPattern)) {
+            return List.of(ALL_URIS);
+        }
+        return key.uris().stream().map(UriTrie::unescape).toList();
+    }
+
+    private LocalDateTime bucket(LocalDateTime time) {
+        long bucketSeconds = properties.getKeyBucket().toSeconds();
+        long epochSecond = time.toEpochSecond(ZoneOffset.UTC);
+        return LocalDateTime.ofEpochSecond(epochSecond - Math.floorMod(epochSecond, bucketSeconds), 0, ZoneOffset.UTC);
+    }
+
+    private record Key(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique, boolean approximate) {
+    }
+
+    /**
+     * По ссылке на значение отличаются повторные загрузки одного ключа.
+     */
+    private static final class Entry {
+        private List<ViewStats> stats;
+    }
+}
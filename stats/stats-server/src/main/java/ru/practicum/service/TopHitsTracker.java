@@ -0,0 +1,75 @@
+package ru.practicum.service;
+
+import org.springframework.stereotype.Component;
+import ru.practicum.config.StatsProperties;
+import ru.practicum.dto.ViewStats;
+import ru.practicum.model.AppUri;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.sketch.SpaceSaving;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Границы интервала округляются до часа, а счет может быть завышен в пределах ошибки скетча.
+ */
+@Component
+public class TopHitsTracker {
+    private final StatsProperties.Top properties;
+    private final ConcurrentSkipListMap<LocalDateTime, SpaceSaving<AppUri>> buckets = new ConcurrentSkipListMap<>();
+    private final LocalDateTime trackedSince;
+
+    public TopHitsTracker(StatsProperties properties) {
+        this.properties = properties.getTop();
+        this.trackedSince = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusHours(1);
+    }
+
+    public void record(List<EndpointHit> hits) {
+        if (!properties.isSketchEnabled()) {
+            return;
+        }
+        Map<LocalDateTime, Map<AppUri, Long>> counts = new HashMap<>();
+        for (EndpointHit hit : hits) {
+            counts.computeIfAbsent(hit.getTimestamp().truncatedTo(ChronoUnit.HOURS), bucket -> new HashMap<>())
+                    .merge(new AppUri(hit.getApp(), hit.getUri()), (long) hit.getWeight(), Long::sum);
+        }
+        LocalDateTime oldest = oldestBucket();
+        counts.forEach((bucket, bucketCounts) -> {
+            if (bucket.isBefore(oldest)) {
+                return;
+            }
+            SpaceSaving<AppUri> sketch = buckets.computeIfAbsent(bucket, b -> new SpaceSaving<>(properties.getCapacity()));
+            synchronized (sketch) {
+                bucketCounts.forEach(sketch::offer);
+            }
+        });
+        buckets.headMap(oldest).clear();
+    }
+
+    public boolean covers(LocalDateTime start, LocalDateTime end) {
+        return properties.isSketchEnabled()
+                && !start.isBefore(trackedSince)
+                && !start.isBefore(oldestBucket())
+                && !end.isBefore(start.plus(properties.getExactBelow()));
+    }
+
+    public List<ViewStats> getTop(LocalDateTime start, LocalDateTime end, int k) {
+        SpaceSaving<AppUri> merged = new SpaceSaving<>(properties.getCapacity());
+        buckets.subMap(start.truncatedTo(ChronoUnit.HOURS), true, end, true).values().forEach(sketch -> {
+            synchronized (sketch) {
+                merged.merge(sketch);
+            }
+        });
+        return merged.top(k).stream()
+                .map(entry -> new ViewStats(entry.getKey().app(), entry.getKey().uri(), entry.getValue()))
+                .toList();
+    }
+
+    private LocalDateTime oldestBucket() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minus(properties.getHorizon());
+    }
+}
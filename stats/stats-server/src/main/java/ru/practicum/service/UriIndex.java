@@ -0,0 +1,47 @@
+package ru.practicum.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import ru.practicum.index.UriTrie;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Найденные uri передаются в запросы одним параметром-массивом, поэтому их число не ограничено лимитом параметров.
+ */
+@Component
+public class UriIndex {
+    private final UriTrie trie = new UriTrie();
+
+    public UriIndex(MeterRegistry meterRegistry) {
+        Gauge.builder("stats.uri.index.size", trie, UriTrie::size).register(meterRegistry);
+    }
+
+    public void add(String uri) {
+        trie.add(uri);
+    }
+
+    /**
+     * null или пустой список - фильтра нет, результат тоже null; пустой результат - под фильтр не подходит ни один uri.
+     */
+    public List<String> resolve(List<String> uris) {
+        if (uris == null || uris.isEmpty()) {
+            return null;
+        }
+        if (uris.stream().noneMatch(uri -> uri.indexOf('*') >= 0)) {
+            return uris;
+        }
+        Set<String> resolved = new LinkedHashSet<>();
+        for (String uri : uris) {
+            if (UriTrie.isPattern(uri)) {
+                resolved.addAll(trie.match(uri));
+            } else {
+                resolved.add(UriTrie.unescape(uri));
+            }
+        }
+        return List.copyOf(resolved);
+    }
+}
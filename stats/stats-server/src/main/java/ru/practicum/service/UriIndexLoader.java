@@ -0,0 +1,37 @@
+package ru.practicum.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.config.ConditionalOnJdbcStorage;
+import ru.practicum.repository.RollupJdbcRepository;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+@Slf4j
+@Component
+@ConditionalOnJdbcStorage
+@RequiredArgsConstructor
+public class UriIndexLoader {
+    private final RollupJdbcRepository rollupJdbcRepository;
+    private final UriIndex uriIndex;
+    private LocalDateTime loadedSince;
+
+    @PostConstruct
+    public void load() {
+        LocalDateTime now = LocalDateTime.now();
+        rollupJdbcRepository.forEachUri(null, uriIndex::add);
+        loadedSince = now.truncatedTo(ChronoUnit.HOURS).minusHours(1);
+        log.info("Загружен индекс uri");
+    }
+
+    @Scheduled(fixedDelayString = "${stats.uri-index.refresh-interval:1m}")
+    public void refresh() {
+        LocalDateTime now = LocalDateTime.now();
+        rollupJdbcRepository.forEachUri(loadedSince, uriIndex::add);
+        loadedSince = now.truncatedTo(ChronoUnit.HOURS).minusHours(1);
+    }
+}
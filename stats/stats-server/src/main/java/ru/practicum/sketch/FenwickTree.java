@@ -0,0 +1,60 @@
+package ru.practicum.sketch;
+
+public final class FenwickTree {
+    private final long[] tree;
+
+    public FenwickTree(int size) {
+        this.tree = new long[size + 1];
+    }
+
+    private FenwickTree(long[] tree) {
+        this.tree = tree;
+    }
+
+    public static FenwickTree of(long[] counts) {
+        long[] tree = new long[counts.length + 1];
+        System.arraycopy(counts, 0, tree, 1, counts.length);
+        for (int i = 1; i < tree.length; i++) {
+            int parent = i + (i & -i);
+            if (parent < tree.length) {
+                tree[parent] += tree[i];
+            }
+        }
+        return new FenwickTree(tree);
+    }
+
+    public int size() {
+        return tree.length - 1;
+    }
+
+    public void add(int index, long delta) {
+        for (int i = index + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    public long prefixSum(int end) {
+        long sum = 0;
+        for (int i = end; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    public long rangeSum(int from, int to) {
+        return from >= to ? 0 : prefixSum(to) - prefixSum(from);
+    }
+
+    public long[] toCounts() {
+        long[] counts = tree.clone();
+        for (int i = counts.length - 1; i > 0; i--) {
+            int parent = i + (i & -i);
+            if (parent < counts.length) {
+                counts[parent] -= counts[i];
+            }
+        }
+        long[] result = new long[size()];
+        System.arraycopy(counts, 1, result, 0, result.length);
+        return result;
+    }
+}
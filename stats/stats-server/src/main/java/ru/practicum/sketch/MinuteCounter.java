@@ -0,0 +1,100 @@
+package ru.practicum.sketch;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * До SPARSE_LIMIT минут с хитами хранятся разреженно, дальше - в дереве Фенвика, которое сдвигается вперед,
+ * отбрасывая старые минуты. Потокобезопасен.
+ */
+public final class MinuteCounter {
+    static final int SPARSE_LIMIT = 64;
+    private static final int MINUTES_PER_HOUR = 60;
+
+    private final int horizonMinutes;
+    private final int size;
+    private TreeMap<Long, Long> sparse = new TreeMap<>();
+    private FenwickTree tree;
+    private long origin;
+    private long lastMinute = Long.MIN_VALUE;
+    private boolean evicted;
+
+    public MinuteCounter(int horizonMinutes, int size) {
+        this.horizonMinutes = horizonMinutes;
+        this.size = size;
+    }
+
+    /**
+     * false, если счетчик уже вытеснен и хиты надо записать в новый.
+     */
+    public synchronized boolean add(long minute, long hits) {
+        if (evicted) {
+            return false;
+        }
+        lastMinute = Math.max(lastMinute, minute);
+        if (tree == null) {
+            sparse.merge(minute, hits, Long::sum);
+            if (sparse.size() > SPARSE_LIMIT) {
+                sparse.headMap(windowStart()).clear();
+                if (sparse.size() > SPARSE_LIMIT) {
+                    toDense();
+                }
+            }
+            return true;
+        }
+        if (minute < origin) {
+            return true;
+        }
+        if (minute - origin >= tree.size()) {
+            shift(windowStart());
+        }
+        tree.add((int) (minute - origin), hits);
+        return true;
+    }
+
+    public synchronized long sum(long fromMinute, long toMinute) {
+        if (tree == null) {
+            long sum = 0;
+            if (fromMinute < toMinute) {
+                for (long hits : sparse.subMap(fromMinute, toMinute).values()) {
+                    sum += hits;
+                }
+            }
+            return sum;
+        }
+        int from = (int) Math.max(0, Math.min(tree.size(), fromMinute - origin));
+        int to = (int) Math.max(0, Math.min(tree.size(), toMinute - origin));
+        return tree.rangeSum(from, to);
+    }
+
+    public synchronized boolean evictIfIdle(long oldest) {
+        evicted = lastMinute < oldest;
+        return evicted;
+    }
+
+    public synchronized boolean isDense() {
+        return tree != null;
+    }
+
+    private long windowStart() {
+        return Math.floorDiv(lastMinute - horizonMinutes, MINUTES_PER_HOUR) * MINUTES_PER_HOUR;
+    }
+
+    private void toDense() {
+        origin = windowStart();
+        tree = new FenwickTree(size);
+        for (Map.Entry<Long, Long> entry : sparse.tailMap(origin).entrySet()) {
+            tree.add((int) (entry.getKey() - origin), entry.getValue());
+        }
+        sparse = null;
+    }
+
+    private void shift(long newOrigin) {
+        long[] counts = tree.toCounts();
+        long[] shifted = new long[counts.length];
+        int offset = (int) Math.min(counts.length, newOrigin - origin);
+        System.arraycopy(counts, offset, shifted, 0, counts.length - offset);
+        tree = FenwickTree.of(shifted);
+        origin = newOrigin;
+    }
+}
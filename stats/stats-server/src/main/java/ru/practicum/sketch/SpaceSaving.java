@@ -0,0 +1,124 @@
+package ru.practicum.sketch;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Счет завышен не больше чем на вытесненный минимум; элемент с частотой выше N / capacity остается в скетче.
+ */
+public final class SpaceSaving<T> {
+    private final int capacity;
+    private final Map<T, Integer> positions;
+    private final Object[] items;
+    private final long[] counts;
+    private int size;
+
+    public SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        this.positions = new HashMap<>(capacity * 2);
+        this.items = new Object[capacity];
+        this.counts = new long[capacity];
+    }
+
+    public void offer(T item, long count) {
+        Integer position = positions.get(item);
+        if (position != null) {
+            counts[position] += count;
+            siftDown(position);
+            return;
+        }
+        if (size < capacity) {
+            place(size, item, count);
+            siftUp(size++);
+            return;
+        }
+        positions.remove(item(0));
+        place(0, item, counts[0] + count);
+        siftDown(0);
+    }
+
+    public void merge(SpaceSaving<T> other) {
+        Map<T, Long> union = new HashMap<>((size + other.size) * 2);
+        for (int i = 0; i < size; i++) {
+            union.put(item(i), counts[i]);
+        }
+        for (int i = 0; i < other.size; i++) {
+            union.merge(other.item(i), other.counts[i], Long::sum);
+        }
+        List<Map.Entry<T, Long>> entries = new ArrayList<>(union.entrySet());
+        if (entries.size() > capacity) {
+            entries.sort(Map.Entry.<T, Long>comparingByValue(Comparator.reverseOrder()));
+            entries = entries.subList(0, capacity);
+        }
+        positions.clear();
+        size = 0;
+        for (Map.Entry<T, Long> entry : entries) {
+            place(size, entry.getKey(), entry.getValue());
+            siftUp(size++);
+        }
+    }
+
+    public List<Map.Entry<T, Long>> top(int k) {
+        List<Map.Entry<T, Long>> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(Map.entry(item(i), counts[i]));
+        }
+        entries.sort(Map.Entry.<T, Long>comparingByValue(Comparator.reverseOrder()));
+        return entries.subList(0, Math.min(k, entries.size()));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T item(int position) {
+        return (T) items[position];
+    }
+
+    private void place(int position, T item, long count) {
+        items[position] = item;
+        counts[position] = count;
+        positions.put(item, position);
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (counts[parent] <= counts[position]) {
+                return;
+            }
+            swap(parent, position);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int smallest = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < size && counts[left] < counts[smallest]) {
+                smallest = left;
+            }
+            if (right < size && counts[right] < counts[smallest]) {
+                smallest = right;
+            }
+            if (smallest == position) {
+                return;
+            }
+            swap(smallest, position);
+            position = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        T item = item(a);
+        long count = counts[a];
+        place(a, item(b), counts[b]);
+        place(b, item, count);
+    }
+}
@@ -1,7 +1,97 @@
 CREATE TABLE IF NOT EXISTS statistic (
-    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
     app_name VARCHAR(255) NOT NULL,
     uri VARCHAR(512) NOT NULL,
     ip VARCHAR(45) NOT NULL,
-    request_date TIMESTAMP
-);
\ No newline at end of file
+    request_date TIMESTAMP NOT NULL,
+    weight INTEGER NOT NULL DEFAULT 1,
+    PRIMARY KEY (id, request_date)
+) PARTITION BY RANGE (request_date);
+
+ALTER TABLE statistic ADD COLUMN IF NOT EXISTS weight INTEGER NOT NULL DEFAULT 1;
+
+CREATE INDEX IF NOT EXISTS statistic_uri_request_date_idx ON statistic (uri, request_date);
+
+CREATE TABLE IF NOT EXISTS statistic_hourly (
+    app_name VARCHAR(255) NOT NULL,
+    uri VARCHAR(512) NOT NULL,
+    bucket TIMESTAMP NOT NULL,
+    hits BIGINT NOT NULL,
+    PRIMARY KEY (app_name, uri, bucket)
+);
+
+CREATE INDEX IF NOT EXISTS statistic_hourly_bucket_idx ON statistic_hourly (bucket);
+
+INSERT INTO statistic_hourly (app_name, uri, bucket, hits)
+SELECT app_name, uri, date_trunc('hour', request_date), SUM(weight)
+FROM statistic
+WHERE request_date IS NOT NULL
+  AND NOT EXISTS (SELECT 1 FROM statistic_hourly)
+GROUP BY app_name, uri, date_trunc('hour', request_date);
+
+
+CREATE TABLE IF NOT EXISTS statistic_hourly_hll (
+    app_name VARCHAR(255) NOT NULL,
+    uri VARCHAR(512) NOT NULL,
+    bucket TIMESTAMP NOT NULL,
+    sketch BYTEA NOT NULL,
+    PRIMARY KEY (app_name, uri, bucket)
+);
+
+CREATE INDEX IF NOT EXISTS statistic_hourly_hll_bucket_idx ON statistic_hourly_hll (bucket);
+
+CREATE TABLE IF NOT EXISTS stat_sketch_backfill (
+    id INTEGER PRIMARY KEY CHECK (id = 1),
+    next_hour TIMESTAMP NOT NULL,
+    until_hour TIMESTAMP NOT NULL
+);
+
+
+CREATE TABLE IF NOT EXISTS stat_app (
+    id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name VARCHAR(255) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS stat_uri (
+    id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    uri VARCHAR(512) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS statistic_encoded (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    app_id INTEGER NOT NULL,
+    uri_id INTEGER NOT NULL,
+    ip INET NOT NULL,
+    request_date TIMESTAMP NOT NULL,
+    weight INTEGER NOT NULL DEFAULT 1,
+    PRIMARY KEY (id, request_date)
+) PARTITION BY RANGE (request_date);
+
+ALTER TABLE statistic_encoded ADD COLUMN IF NOT EXISTS weight INTEGER NOT NULL DEFAULT 1;
+
+CREATE INDEX IF NOT EXISTS statistic_encoded_uri_request_date_idx ON statistic_encoded (uri_id, request_date);
+
+CREATE OR REPLACE VIEW statistic_decoded AS
+SELECT e.id, a.name AS app_name, u.uri, host(e.ip) AS ip, e.request_date, e.weight
+FROM statistic_encoded e
+JOIN stat_app a ON a.id = e.app_id
+JOIN stat_uri u ON u.id = e.uri_id;
+
+CREATE OR REPLACE VIEW statistic_all AS
+SELECT id, app_name, uri, ip, request_date, weight FROM statistic
+UNION ALL
+SELECT id, app_name, uri, ip, request_date, weight FROM statistic_decoded;
+
+CREATE TABLE IF NOT EXISTS stat_compaction (
+    id INTEGER PRIMARY KEY CHECK (id = 1),
+    compacted_before TIMESTAMP NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS stat_sampled_hour (
+    bucket TIMESTAMP PRIMARY KEY
+);
+
+CREATE TABLE IF NOT EXISTS stat_instance (
+    id VARCHAR(36) PRIMARY KEY,
+    seen_at TIMESTAMP NOT NULL
+);
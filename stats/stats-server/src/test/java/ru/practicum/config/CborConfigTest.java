@@ -0,0 +1,67 @@
+package ru.practicum.config;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.practicum.dto.EndpointHitDto;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CborConfigTest {
+    private static final TypeReference<List<EndpointHitDto>> HITS = new TypeReference<>() {
+    };
+
+    private final ObjectMapper jsonMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final ObjectMapper cborMapper = CborConfig.cborObjectMapper();
+
+    @Test
+    void writesTimestampAsEpochMillis() throws Exception {
+        LocalDateTime timestamp = LocalDateTime.of(2024, 5, 1, 10, 20, 30);
+
+        JsonNode node = cborMapper.readTree(cborMapper.writeValueAsBytes(hit(1, timestamp)));
+
+        assertTrue(node.get("timestamp").isIntegralNumber());
+        assertEquals(timestamp.toInstant(ZoneOffset.UTC).toEpochMilli(), node.get("timestamp").longValue());
+    }
+
+    @Test
+    void decodesToSameHitsAsJsonAndIsSmaller() throws Exception {
+        List<EndpointHitDto> hits = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            hits.add(hit(i, LocalDateTime.of(2024, 5, 1, 10, 0).plusSeconds(i)));
+        }
+
+        byte[] json = jsonMapper.writeValueAsBytes(hits);
+        byte[] cbor = cborMapper.writeValueAsBytes(hits);
+
+        assertEquals(jsonMapper.readValue(json, HITS), cborMapper.readValue(cbor, HITS));
+        assertEquals(hits, cborMapper.readValue(cbor, HITS));
+        assertTrue(cbor.length < json.length, String.format("CBOR %s bytes, JSON %s bytes", cbor.length, json.length));
+    }
+
+    @Test
+    void readsStringTimestampFromOlderClients() throws Exception {
+        byte[] cbor = cborMapper.writeValueAsBytes(jsonMapper.readTree(jsonMapper.writeValueAsBytes(
+                hit(1, LocalDateTime.of(2024, 5, 1, 10, 20, 30)))));
+
+        assertEquals(LocalDateTime.of(2024, 5, 1, 10, 20, 30),
+                cborMapper.readValue(cbor, EndpointHitDto.class).getTimestamp());
+    }
+
+    private static EndpointHitDto hit(int i, LocalDateTime timestamp) {
+        EndpointHitDto hit = new EndpointHitDto();
+        hit.setApp("ewm-main-service");
+        hit.setUri("/events/" + i);
+        hit.setIp("192.168.0." + i % 256);
+        hit.setTimestamp(timestamp);
+        return hit;
+    }
+}
@@ -0,0 +1,64 @@
+package ru.practicum.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FenwickTreeTest {
+
+    @Test
+    void rangeSumMatchesNaiveSum() {
+        Random random = new Random(7);
+        long[] counts = new long[100];
+        FenwickTree tree = new FenwickTree(counts.length);
+        for (int i = 0; i < 1000; i++) {
+            int index = random.nextInt(counts.length);
+            long delta = random.nextInt(10);
+            counts[index] += delta;
+            tree.add(index, delta);
+        }
+
+        for (int from = 0; from <= counts.length; from += 7) {
+            for (int to = from; to <= counts.length; to += 5) {
+                long expected = 0;
+                for (int i = from; i < to; i++) {
+                    expected += counts[i];
+                }
+                assertEquals(expected, tree.rangeSum(from, to));
+            }
+        }
+        assertEquals(0, tree.rangeSum(10, 3));
+    }
+
+    @Test
+    void ofAndToCountsAreInverse() {
+        long[] counts = {3, 0, 5, 1, 0, 0, 7, 2, 9, 4, 6};
+
+        FenwickTree tree = FenwickTree.of(counts);
+
+        assertEquals(counts.length, tree.size());
+        assertArrayEquals(counts, tree.toCounts());
+        assertEquals(3 + 0 + 5 + 1, tree.prefixSum(4));
+        assertEquals(7 + 2 + 9, tree.rangeSum(6, 9));
+    }
+
+    @Test
+    void ofBuildsSameTreeAsIncrementalAdds() {
+        long[] counts = new long[37];
+        FenwickTree incremental = new FenwickTree(counts.length);
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = i * 31 % 11;
+            incremental.add(i, counts[i]);
+        }
+
+        FenwickTree built = FenwickTree.of(counts);
+
+        for (int end = 0; end <= counts.length; end++) {
+            assertEquals(incremental.prefixSum(end), built.prefixSum(end));
+        }
+        assertArrayEquals(counts, incremental.toCounts());
+    }
+}
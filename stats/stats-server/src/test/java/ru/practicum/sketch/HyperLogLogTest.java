@@ -0,0 +1,66 @@
+package ru.practicum.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTest {
+
+    @Test
+    void estimatesSmallCardinalityWithLinearCounting() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 100; i++) {
+            sketch.add("10.0.0." + i % 50);
+        }
+
+        assertTrue(Math.abs(sketch.estimate() - 50) <= 2, "estimate " + sketch.estimate());
+    }
+
+    @Test
+    void estimateIsWithinErrorBound() {
+        HyperLogLog sketch = new HyperLogLog();
+        int distinct = 200_000;
+        for (int i = 0; i < distinct; i++) {
+            sketch.add("192.168." + (i >>> 8 & 0xff) + "." + (i & 0xff) + "#" + i);
+        }
+
+        double error = Math.abs(sketch.estimate() - distinct) / (double) distinct;
+        assertTrue(error < 0.07, "relative error " + error);
+    }
+
+    @Test
+    void mergeEqualsSketchOfUnion() {
+        HyperLogLog first = new HyperLogLog();
+        HyperLogLog second = new HyperLogLog();
+        HyperLogLog union = new HyperLogLog();
+        for (int i = 0; i < 30_000; i++) {
+            String value = "ip-" + i;
+            (i % 2 == 0 ? first : second).add(value);
+            union.add(value);
+        }
+
+        first.merge(second);
+
+        assertArrayEquals(union.toBytes(), first.toBytes());
+    }
+
+    @Test
+    void sparseAndDenseSerializationRoundTrip() {
+        HyperLogLog sparse = new HyperLogLog();
+        sparse.add("10.0.0.1");
+        sparse.add("10.0.0.2");
+        HyperLogLog dense = new HyperLogLog();
+        for (int i = 0; i < 50_000; i++) {
+            dense.add("ip-" + i);
+        }
+
+        byte[] sparseBytes = sparse.toBytes();
+        byte[] denseBytes = dense.toBytes();
+
+        assertTrue(sparseBytes.length < denseBytes.length);
+        assertEquals(sparse.estimate(), HyperLogLog.fromBytes(sparseBytes).estimate());
+        assertArrayEquals(denseBytes, HyperLogLog.fromBytes(denseBytes).toBytes());
+    }
+}
@@ -0,0 +1,63 @@
+package ru.practicum.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MinuteCounterTest {
+    private static final int HORIZON = 24 * 60;
+    private static final int SIZE = HORIZON + 360;
+    private static final long START = 28_000_000L;
+
+    @Test
+    void staysSparseForFewMinutes() {
+        MinuteCounter counter = new MinuteCounter(HORIZON, SIZE);
+        counter.add(START, 2);
+        counter.add(START + 10, 3);
+        counter.add(START + 10, 1);
+
+        assertFalse(counter.isDense());
+        assertEquals(6, counter.sum(START, START + 11));
+        assertEquals(4, counter.sum(START + 1, START + 11));
+        assertEquals(2, counter.sum(START, START + 10));
+        assertEquals(0, counter.sum(START + 11, START));
+    }
+
+    @Test
+    void switchesToDenseWithoutLosingCounts() {
+        MinuteCounter counter = new MinuteCounter(HORIZON, SIZE);
+        for (int i = 0; i <= MinuteCounter.SPARSE_LIMIT; i++) {
+            counter.add(START + i, 1);
+        }
+
+        assertTrue(counter.isDense());
+        assertEquals(MinuteCounter.SPARSE_LIMIT + 1, counter.sum(START, START + HORIZON));
+        assertEquals(10, counter.sum(START + 5, START + 15));
+    }
+
+    @Test
+    void shiftsDenseWindowAndDropsOldMinutes() {
+        MinuteCounter counter = new MinuteCounter(HORIZON, SIZE);
+        for (int i = 0; i <= MinuteCounter.SPARSE_LIMIT; i++) {
+            counter.add(START + i, 1);
+        }
+        long later = START + 2L * HORIZON;
+
+        counter.add(later, 5);
+
+        assertEquals(5, counter.sum(later - HORIZON, later + 1));
+        assertEquals(0, counter.sum(START, START + MinuteCounter.SPARSE_LIMIT + 1));
+    }
+
+    @Test
+    void evictedCounterRejectsHits() {
+        MinuteCounter counter = new MinuteCounter(HORIZON, SIZE);
+        counter.add(START, 1);
+
+        assertFalse(counter.evictIfIdle(START));
+        assertTrue(counter.evictIfIdle(START + 1));
+        assertFalse(counter.add(START + 2, 1));
+    }
+}
@@ -0,0 +1,84 @@
+package ru.practicum.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpaceSavingTest {
+
+    @Test
+    void countsExactlyWhileBelowCapacity() {
+        SpaceSaving<String> sketch = new SpaceSaving<>(10);
+        sketch.offer("/a", 3);
+        sketch.offer("/b", 1);
+        sketch.offer("/a", 2);
+
+        List<Map.Entry<String, Long>> top = sketch.top(5);
+
+        assertEquals(2, top.size());
+        assertEquals(Map.entry("/a", 5L), top.get(0));
+        assertEquals(Map.entry("/b", 1L), top.get(1));
+    }
+
+    @Test
+    void evictsMinimumAndInheritsItsCount() {
+        SpaceSaving<String> sketch = new SpaceSaving<>(2);
+        sketch.offer("/a", 5);
+        sketch.offer("/b", 2);
+        sketch.offer("/c", 1);
+
+        List<Map.Entry<String, Long>> top = sketch.top(2);
+
+        assertEquals(2, sketch.size());
+        assertEquals(Map.entry("/a", 5L), top.get(0));
+        assertEquals(Map.entry("/c", 3L), top.get(1));
+    }
+
+    @Test
+    void keepsHeavyHittersOfSkewedStream() {
+        SpaceSaving<Integer> sketch = new SpaceSaving<>(50);
+        Map<Integer, Long> exact = new HashMap<>();
+        Random random = new Random(42);
+        long total = 0;
+        for (int i = 0; i < 100_000; i++) {
+            int item = random.nextInt(10) < 5 ? random.nextInt(5) : random.nextInt(10_000);
+            sketch.offer(item, 1);
+            exact.merge(item, 1L, Long::sum);
+            total++;
+        }
+
+        List<Map.Entry<Integer, Long>> top = sketch.top(5);
+
+        long maxError = total / 50;
+        for (Map.Entry<Integer, Long> entry : top) {
+            assertTrue(entry.getKey() < 5, "heavy hitter expected, got " + entry.getKey());
+            long actual = exact.get(entry.getKey());
+            assertTrue(entry.getValue() >= actual && entry.getValue() - actual <= maxError);
+        }
+    }
+
+    @Test
+    void mergeSumsCountersAndTruncatesToCapacity() {
+        SpaceSaving<String> first = new SpaceSaving<>(3);
+        first.offer("/a", 10);
+        first.offer("/b", 4);
+        first.offer("/c", 1);
+        SpaceSaving<String> second = new SpaceSaving<>(3);
+        second.offer("/b", 7);
+        second.offer("/d", 3);
+        second.offer("/e", 2);
+
+        first.merge(second);
+
+        assertEquals(3, first.size());
+        assertEquals(List.of(Map.entry("/b", 11L), Map.entry("/a", 10L), Map.entry("/d", 3L)), first.top(3));
+        first.offer("/f", 1);
+        assertEquals(Map.entry("/f", 4L), first.top(3).get(2));
+    }
+}